@@ -0,0 +1,56 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import fr.babaprog.spring.boot.tutorial.SpringBootTutorialApplication;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application without a web server on an in-memory H2 database, so benchmarks measure the application
+ * and not the network or MySQL.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String database) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(SpringBootTutorialApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--logging.level.root=warn");
+    }
+
+    static List<Department> departments(int count) {
+        List<Department> departments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            departments.add(Department.builder()
+                    .departmentId((long) i + 1)
+                    .departmentName("Department " + i)
+                    .departmentAddress(i + " Engineering Street, Paris")
+                    .departmentCode("FR-" + i)
+                    .version(0L)
+                    .build());
+        }
+        return departments;
+    }
+
+    static List<Long> seed(DepartmentService departmentService, int count) {
+        List<Department> departments = departments(count);
+        departments.forEach(department -> department.setDepartmentId(null));
+        return departmentService.saveDepartments(departments).getDepartments().stream()
+                .map(Department::getDepartmentId)
+                .toList();
+    }
+}
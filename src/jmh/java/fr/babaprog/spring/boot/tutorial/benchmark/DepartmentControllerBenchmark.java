@@ -0,0 +1,81 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import fr.babaprog.spring.boot.tutorial.controller.DepartmentController;
+import fr.babaprog.spring.boot.tutorial.error.RestResponseEntityExceptionHandler;
+import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.Validator;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Full DispatcherServlet path through MockMvc: handler mapping, argument resolution, validation, service call and
+ * message conversion, without a socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DepartmentControllerBenchmark {
+
+    private static final String DEPARTMENT_JSON = """
+            {
+                "departmentName": "Mechanical Engineering",
+                "departmentAddress": "France",
+                "departmentCode": "FR-01"
+            }""";
+
+    @Param({"100"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private List<Long> departmentIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("mvc");
+        departmentIds = BenchmarkApplication.seed(context.getBean(DepartmentService.class), rows);
+        mockMvc = MockMvcBuilders.standaloneSetup(context.getBean(DepartmentController.class))
+                .setControllerAdvice(context.getBean(RestResponseEntityExceptionHandler.class))
+                // The application's converters, so the byte[] responses are written as they are, as in production
+                .setMessageConverters(context.getBean(HttpMessageConverters.class).getConverters().toArray(HttpMessageConverter[]::new))
+                .setValidator(context.getBean("defaultValidator", Validator.class))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult fetchDepartmentById() throws Exception {
+        Long departmentId = departmentIds.get(ThreadLocalRandom.current().nextInt(departmentIds.size()));
+        return mockMvc.perform(get("/departments/{id}", departmentId)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult fetchDepartmentList() throws Exception {
+        return mockMvc.perform(get("/departments")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult saveDepartment() throws Exception {
+        return mockMvc.perform(post("/departments").contentType(MediaType.APPLICATION_JSON).content(DEPARTMENT_JSON)).andReturn();
+    }
+}
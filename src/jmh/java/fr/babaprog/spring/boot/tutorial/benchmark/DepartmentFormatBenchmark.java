@@ -0,0 +1,70 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.babaprog.spring.boot.tutorial.config.DepartmentProtobuf;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of a department list in each representation /departments can negotiate. The payload size
+ * of each format is printed when its trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepartmentFormatBenchmark {
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    private String format;
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+
+    private List<Department> departments;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        TypeReference<List<Department>> listType = new TypeReference<>() {
+        };
+        listWriter = objectMapper.writerFor(listType);
+        listReader = objectMapper.readerFor(listType);
+
+        departments = BenchmarkApplication.departments(size);
+        payload = encode();
+        System.out.printf("%s, %d departments: %d bytes%n", format, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encodeList() throws IOException {
+        return encode();
+    }
+
+    @Benchmark
+    public List<Department> decodeList() throws IOException {
+        return format.equals("protobuf") ? DepartmentProtobuf.decodeList(payload) : listReader.readValue(payload);
+    }
+
+    private byte[] encode() throws IOException {
+        return format.equals("protobuf") ? DepartmentProtobuf.encodeList(departments) : listWriter.writeValueAsBytes(departments);
+    }
+}
@@ -0,0 +1,72 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepartmentSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private ObjectWriter departmentWriter;
+    private ObjectReader departmentReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+
+    private Department department;
+    private List<Department> departments;
+    private byte[] departmentJson;
+    private byte[] departmentsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Same defaults as the ObjectMapper Spring Boot configures for the controllers
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TypeReference<List<Department>> listType = new TypeReference<>() {
+        };
+        departmentWriter = objectMapper.writerFor(Department.class);
+        departmentReader = objectMapper.readerFor(Department.class);
+        listWriter = objectMapper.writerFor(listType);
+        listReader = objectMapper.readerFor(listType);
+
+        departments = BenchmarkApplication.departments(size);
+        department = departments.get(0);
+        departmentJson = departmentWriter.writeValueAsBytes(department);
+        departmentsJson = listWriter.writeValueAsBytes(departments);
+    }
+
+    @Benchmark
+    public byte[] serializeDepartment() throws IOException {
+        return departmentWriter.writeValueAsBytes(department);
+    }
+
+    @Benchmark
+    public Department deserializeDepartment() throws IOException {
+        return departmentReader.readValue(departmentJson);
+    }
+
+    @Benchmark
+    public byte[] serializeDepartmentList() throws IOException {
+        return listWriter.writeValueAsBytes(departments);
+    }
+
+    @Benchmark
+    public List<Department> deserializeDepartmentList() throws IOException {
+        return listReader.readValue(departmentsJson);
+    }
+}
@@ -0,0 +1,90 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DepartmentServiceBenchmark {
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private DepartmentService departmentService;
+    private CacheManager cacheManager;
+    private List<Long> departmentIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("service");
+        departmentService = context.getBean(DepartmentService.class);
+        cacheManager = context.getBean(CacheManager.class);
+        departmentIds = BenchmarkApplication.seed(departmentService, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Long randomId() {
+        return departmentIds.get(ThreadLocalRandom.current().nextInt(departmentIds.size()));
+    }
+
+    @Benchmark
+    public Department fetchDepartmentByIdCached() throws DepartmentNotFoundException {
+        return departmentService.fetchDepartmentById(randomId());
+    }
+
+    @Benchmark
+    public Department fetchDepartmentByIdUncached() throws DepartmentNotFoundException {
+        Long departmentId = randomId();
+        cacheManager.getCache("departments").evict(departmentId);
+        return departmentService.fetchDepartmentById(departmentId);
+    }
+
+    @Benchmark
+    public Department fetchDepartmentByName() {
+        return departmentService.fetchDepartmentByName("department " + ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public DepartmentList fetchDepartmentList() {
+        return departmentService.fetchDepartmentList();
+    }
+
+    @Benchmark
+    public DepartmentPage fetchDepartmentPage() {
+        return departmentService.fetchDepartmentPage(randomId(), 50);
+    }
+
+    @Benchmark
+    public Department saveDepartment() {
+        return departmentService.saveDepartment(Department.builder()
+                .departmentName("Benchmark " + System.nanoTime())
+                .departmentCode("BE-01")
+                .build());
+    }
+
+    @Benchmark
+    public Department updateDepartment() throws DepartmentNotFoundException {
+        return departmentService.updateDepartment(randomId(), Department.builder()
+                .departmentCode("FR-" + ThreadLocalRandom.current().nextInt(1000))
+                .build());
+    }
+}
@@ -0,0 +1,51 @@
+package fr.babaprog.spring.boot.tutorial.benchmark;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the @Valid check saveDepartment runs on every request body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepartmentValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Department validDepartment;
+    private Department invalidDepartment;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validDepartment = Department.builder().departmentName("Mechanical Engineering").departmentCode("FR-01").build();
+        invalidDepartment = Department.builder().departmentName(" ").departmentCode("FR-01").build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Department>> validateValidDepartment() {
+        return validator.validate(validDepartment);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Department>> validateInvalidDepartment() {
+        return validator.validate(invalidDepartment);
+    }
+}
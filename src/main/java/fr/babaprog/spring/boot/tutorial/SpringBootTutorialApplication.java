@@ -2,12 +2,34 @@ package fr.babaprog.spring.boot.tutorial;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 
 @SpringBootApplication
+// Caching wraps the transactional proxies, so a cache hit never opens a transaction
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+@EnableScheduling
 public class SpringBootTutorialApplication {
 
-	public static void main(String[] args) {
-		SpringApplication.run(SpringBootTutorialApplication.class, args);
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ConfigurableApplicationContext context = SpringApplication.run(SpringBootTutorialApplication.class, args);
+
+		// Training run of the fast-startup build: serve one request so its classes are loaded too, then exit and let
+		// the JVM write them to the class-data sharing archive
+		if (context.getEnvironment().getProperty("department.startup.exit-when-ready", Boolean.class, false)) {
+			String port = context.getEnvironment().getProperty("local.server.port");
+			HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/departments")).build(),
+					HttpResponse.BodyHandlers.discarding());
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
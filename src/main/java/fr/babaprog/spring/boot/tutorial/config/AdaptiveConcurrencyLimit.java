@@ -0,0 +1,94 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows latency, in the spirit of the gradient limiters: a slow moving average of the
+ * request time stands for the unloaded latency, and whenever recent requests take longer the limit shrinks in
+ * proportion, down to half per sample. While latency stays flat the limit grows by its square root each time, so it
+ * settles just above the concurrency the backend can absorb without queueing.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    // How far recent latency may exceed the baseline before the limit backs off
+    private static final double TOLERANCE = 1.5;
+    // Share of each new limit estimate taken into the current limit
+    private static final double SMOOTHING = 0.2;
+    // Samples averaged into the baseline and into the recent latency
+    private static final int BASELINE_WINDOW = 600;
+    private static final int RECENT_WINDOW = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double baselineNanos;
+    private double recentNanos;
+    private long samples;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire()}, {@code inFlight} being the number of requests running when
+     * it started.
+     */
+    void release(long elapsedNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        onSample(elapsedNanos, inFlightAtStart);
+    }
+
+    /**
+     * Ends an asynchronous request without taking its duration as a sample: a stream lasts as long as its payload
+     * and its client take, which says nothing about queueing in the backend.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void onSample(long elapsedNanos, int inFlightAtStart) {
+        samples++;
+        baselineNanos = average(baselineNanos, elapsedNanos, Math.min(samples, BASELINE_WINDOW));
+        recentNanos = average(recentNanos, elapsedNanos, Math.min(samples, RECENT_WINDOW));
+        // Once a slowdown is over the baseline drops faster, or the tolerance would stay as lax as during the slowdown
+        if (baselineNanos / recentNanos > 2) {
+            baselineNanos *= 0.95;
+        }
+        // With less than half the limit in use the sample says nothing about the limit
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineNanos / recentNanos));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+    }
+
+    private static double average(double average, long sample, long window) {
+        return average + (sample - average) / window;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
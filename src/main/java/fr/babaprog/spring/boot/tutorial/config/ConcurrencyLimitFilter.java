@@ -0,0 +1,176 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.babaprog.spring.boot.tutorial.error.ErrorMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for /departments, enabled with department.concurrency-limit.enabled=true. Reads (GET and HEAD)
+ * and writes each get an {@link AdaptiveConcurrencyLimit}, so bulk writes cannot take the slots lookups need; a
+ * request over its group's limit is answered 503 with Retry-After at once instead of queueing for a Tomcat thread
+ * and a connection. The change feed is left out, its requests wait on purpose. Other asynchronous requests, such as
+ * the export, hold their slot until the response completes.
+ * <p>
+ * Exposes department.concurrency.limit, department.concurrency.in-flight and department.concurrency.rejected,
+ * tagged with group=read or group=write.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(value = "department.concurrency-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String DEPARTMENTS_PATH = "/departments";
+    private static final String CHANGES_PATH = "/departments/changes";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${department.concurrency-limit.retry-after:PT1S}")
+    private Duration retryAfter;
+
+    @Value("${department.concurrency-limit.reads.initial-limit:50}")
+    private int readInitialLimit;
+
+    @Value("${department.concurrency-limit.reads.min-limit:5}")
+    private int readMinLimit;
+
+    @Value("${department.concurrency-limit.reads.max-limit:500}")
+    private int readMaxLimit;
+
+    @Value("${department.concurrency-limit.writes.initial-limit:20}")
+    private int writeInitialLimit;
+
+    @Value("${department.concurrency-limit.writes.min-limit:2}")
+    private int writeMinLimit;
+
+    @Value("${department.concurrency-limit.writes.max-limit:100}")
+    private int writeMaxLimit;
+
+    private AdaptiveConcurrencyLimit reads;
+    private AdaptiveConcurrencyLimit writes;
+    private Counter readsRejected;
+    private Counter writesRejected;
+    private byte[] rejectedBody;
+
+    @PostConstruct
+    void createLimits() throws IOException {
+        reads = new AdaptiveConcurrencyLimit(readInitialLimit, readMinLimit, readMaxLimit);
+        writes = new AdaptiveConcurrencyLimit(writeInitialLimit, writeMinLimit, writeMaxLimit);
+        readsRejected = registerMetrics("read", reads);
+        writesRejected = registerMetrics("write", writes);
+        rejectedBody = objectMapper.writeValueAsBytes(
+                new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE, "Too Many Concurrent Requests"));
+    }
+
+    private Counter registerMetrics(String group, AdaptiveConcurrencyLimit concurrencyLimit) {
+        Gauge.builder("department.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                .description("Concurrent requests currently admitted")
+                .tag("group", group)
+                .register(meterRegistry);
+        Gauge.builder("department.concurrency.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Requests currently running")
+                .tag("group", group)
+                .register(meterRegistry);
+        return Counter.builder("department.concurrency.rejected")
+                .description("Requests turned away over the concurrency limit")
+                .tag("group", group)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals(DEPARTMENTS_PATH) || path.startsWith(DEPARTMENTS_PATH + "/")) || path.startsWith(CHANGES_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        boolean read = HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+        AdaptiveConcurrencyLimit concurrencyLimit = read ? reads : writes;
+
+        if (!concurrencyLimit.tryAcquire()) {
+            (read ? readsRejected : writesRejected).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(rejectedBody);
+            return;
+        }
+
+        int inFlight = concurrencyLimit.inFlight();
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            // The handler returned but the response is still being produced on another thread
+            async = request.isAsyncStarted();
+            if (async) {
+                request.getAsyncContext().addListener(new AsyncRelease(concurrencyLimit));
+            }
+        } finally {
+            if (!async) {
+                concurrencyLimit.release(System.nanoTime() - start, inFlight);
+            }
+        }
+    }
+
+    // onComplete also follows a timeout or an error, so it is the only place the slot is released, and only once
+    private static final class AsyncRelease implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimit concurrencyLimit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        AsyncRelease(AdaptiveConcurrencyLimit concurrencyLimit) {
+            this.concurrencyLimit = concurrencyLimit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimit.release();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        // A new async cycle drops the listeners of the previous one
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary representations for service-to-service callers. CBOR (application/cbor) and Smile
+ * (application/x-jackson-smile) come with their Jackson modules on the classpath; Protobuf (application/x-protobuf)
+ * is added here for departments and department lists. The converter goes last so JSON stays the answer to
+ * Accept: *&#47;*.
+ */
+@Configuration
+@Profile("!reactive")
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new DepartmentProtobufHttpMessageConverter());
+    }
+}
@@ -0,0 +1,141 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Splits reads from writes when department.datasource.routing.enabled=true: read-only transactions go to the
+ * replicas listed under department.datasource.replicas, everything else to spring.datasource. Replicas reuse the
+ * pool settings of the primary.
+ * <p>
+ * After a write, the client gets a cookie that keeps its reads on the primary for the sticky window, so it reads
+ * its own writes despite replication lag.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(value = "department.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig implements WebMvcConfigurer {
+
+    static final String PRIMARY_COOKIE = "department-primary";
+
+    public record Replica(String url, String username, String password) {
+    }
+
+    // Replica pools are not DataSource beans, so JPA and the health checks only ever see the routing data source
+    public record ReplicaDataSources(List<HikariDataSource> dataSources) implements AutoCloseable {
+        @Override
+        public void close() {
+            dataSources.forEach(HikariDataSource::close);
+        }
+    }
+
+    @Value("${department.datasource.routing.sticky-window:PT5S}")
+    private Duration stickyWindow;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaDataSources replicaDataSources(HikariDataSource primaryDataSource, Environment environment) {
+        List<Replica> replicas = Binder.get(environment)
+                .bind("department.datasource.replicas", Bindable.listOf(Replica.class))
+                .orElse(List.of());
+
+        List<HikariDataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            primaryDataSource.copyStateTo(dataSource);
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(replica.url());
+            dataSource.setUsername(Objects.requireNonNullElse(replica.username(), primaryDataSource.getUsername()));
+            dataSource.setPassword(Objects.requireNonNullElse(replica.password(), primaryDataSource.getPassword()));
+            dataSources.add(dataSource);
+        }
+        return new ReplicaDataSources(dataSources);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSources replicaDataSources) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSources.dataSources());
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!stickyWindow.isZero()) {
+            registry.addInterceptor(new ReadYourWritesInterceptor(stickyWindow));
+        }
+    }
+
+    // Any mutating request (re)starts the window and reads on the primary itself; the cookie expiring ends it
+    static class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+        private final Duration stickyWindow;
+
+        ReadYourWritesInterceptor(Duration stickyWindow) {
+            this.stickyWindow = stickyWindow;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (isWrite(request)) {
+                Cookie cookie = new Cookie(PRIMARY_COOKIE, "1");
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, stickyWindow.toSeconds()));
+                response.addCookie(cookie);
+                ReadWriteRoutingDataSource.usePrimaryOnly(true);
+                return true;
+            }
+            if (Objects.nonNull(request.getCookies())) {
+                for (Cookie cookie : request.getCookies()) {
+                    if (PRIMARY_COOKIE.equals(cookie.getName())) {
+                        ReadWriteRoutingDataSource.usePrimaryOnly(true);
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            ReadWriteRoutingDataSource.usePrimaryOnly(false);
+        }
+
+        private static boolean isWrite(HttpServletRequest request) {
+            return switch (request.getMethod()) {
+                case "GET", "HEAD", "OPTIONS" -> false;
+                default -> true;
+            };
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Protobuf encoding of {@link Department} and of lists of them, following src/main/proto/department.proto. Written
+ * against the wire format directly rather than generated classes, so the entity is the only model and nothing has
+ * to be copied field by field.
+ */
+public final class DepartmentProtobuf {
+
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType(APPLICATION_PROTOBUF_VALUE);
+
+    private static final int DEPARTMENT_ID = 1;
+    private static final int DEPARTMENT_NAME = 2;
+    private static final int DEPARTMENT_ADDRESS = 3;
+    private static final int DEPARTMENT_CODE = 4;
+    private static final int VERSION = 5;
+    private static final int DEPARTMENTS = 1;
+
+    // Field number and wire type, as they appear in front of each field
+    private static final int DEPARTMENT_ID_TAG = DEPARTMENT_ID << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int DEPARTMENT_NAME_TAG = DEPARTMENT_NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DEPARTMENT_ADDRESS_TAG = DEPARTMENT_ADDRESS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DEPARTMENT_CODE_TAG = DEPARTMENT_CODE << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int VERSION_TAG = VERSION << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int DEPARTMENTS_TAG = DEPARTMENTS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    private DepartmentProtobuf() {
+    }
+
+    public static byte[] encode(Department department) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size(department));
+        writeDepartment(department, buffer);
+        return buffer.toByteArray();
+    }
+
+    public static byte[] encodeList(List<Department> departments) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeDepartments(departments, buffer);
+        return buffer.toByteArray();
+    }
+
+    static void writeDepartment(Department department, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeFields(department, output);
+        output.flush();
+    }
+
+    static void writeDepartments(List<Department> departments, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        for (Department department : departments) {
+            output.writeUInt32NoTag(DEPARTMENTS_TAG);
+            output.writeUInt32NoTag(size(department));
+            writeFields(department, output);
+        }
+        output.flush();
+    }
+
+    public static Department decode(byte[] bytes) throws IOException {
+        return readDepartment(CodedInputStream.newInstance(bytes));
+    }
+
+    public static List<Department> decodeList(byte[] bytes) throws IOException {
+        return readDepartments(CodedInputStream.newInstance(bytes));
+    }
+
+    static Department readDepartment(InputStream in) throws IOException {
+        return readDepartment(CodedInputStream.newInstance(in));
+    }
+
+    static List<Department> readDepartments(InputStream in) throws IOException {
+        return readDepartments(CodedInputStream.newInstance(in));
+    }
+
+    private static List<Department> readDepartments(CodedInputStream input) throws IOException {
+        List<Department> departments = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == DEPARTMENTS_TAG) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                departments.add(readDepartment(input));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return departments;
+    }
+
+    // Reads to the end of the input or of the current limit; unknown fields are skipped as protobuf requires
+    private static Department readDepartment(CodedInputStream input) throws IOException {
+        Department department = new Department();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case DEPARTMENT_ID_TAG -> department.setDepartmentId(input.readInt64());
+                case DEPARTMENT_NAME_TAG -> department.setDepartmentName(input.readStringRequireUtf8());
+                case DEPARTMENT_ADDRESS_TAG -> department.setDepartmentAddress(input.readStringRequireUtf8());
+                case DEPARTMENT_CODE_TAG -> department.setDepartmentCode(input.readStringRequireUtf8());
+                case VERSION_TAG -> department.setVersion(input.readInt64());
+                default -> input.skipField(tag);
+            }
+        }
+        return department;
+    }
+
+    private static void writeFields(Department department, CodedOutputStream output) throws IOException {
+        if (Objects.nonNull(department.getDepartmentId())) {
+            output.writeInt64(DEPARTMENT_ID, department.getDepartmentId());
+        }
+        if (Objects.nonNull(department.getDepartmentName())) {
+            output.writeString(DEPARTMENT_NAME, department.getDepartmentName());
+        }
+        if (Objects.nonNull(department.getDepartmentAddress())) {
+            output.writeString(DEPARTMENT_ADDRESS, department.getDepartmentAddress());
+        }
+        if (Objects.nonNull(department.getDepartmentCode())) {
+            output.writeString(DEPARTMENT_CODE, department.getDepartmentCode());
+        }
+        if (Objects.nonNull(department.getVersion())) {
+            output.writeInt64(VERSION, department.getVersion());
+        }
+    }
+
+    private static int size(Department department) {
+        int size = 0;
+        if (Objects.nonNull(department.getDepartmentId())) {
+            size += CodedOutputStream.computeInt64Size(DEPARTMENT_ID, department.getDepartmentId());
+        }
+        if (Objects.nonNull(department.getDepartmentName())) {
+            size += CodedOutputStream.computeStringSize(DEPARTMENT_NAME, department.getDepartmentName());
+        }
+        if (Objects.nonNull(department.getDepartmentAddress())) {
+            size += CodedOutputStream.computeStringSize(DEPARTMENT_ADDRESS, department.getDepartmentAddress());
+        }
+        if (Objects.nonNull(department.getDepartmentCode())) {
+            size += CodedOutputStream.computeStringSize(DEPARTMENT_CODE, department.getDepartmentCode());
+        }
+        if (Objects.nonNull(department.getVersion())) {
+            size += CodedOutputStream.computeInt64Size(VERSION, department.getVersion());
+        }
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads and writes a {@link Department} or a {@code List<Department>} as application/x-protobuf, see
+ * {@link DepartmentProtobuf}. Other payloads are left to the Jackson converters.
+ */
+class DepartmentProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    DepartmentProtobufHttpMessageConverter() {
+        super(DepartmentProtobuf.APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Department.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (isDepartment(type) || isDepartmentList(type)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return (isDepartment(Objects.nonNull(type) ? type : clazz) || isDepartmentList(type)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return isDepartmentList(type)
+                ? DepartmentProtobuf.readDepartments(inputMessage.getBody())
+                : DepartmentProtobuf.readDepartment(inputMessage.getBody());
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return DepartmentProtobuf.readDepartment(inputMessage.getBody());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof Department department) {
+            DepartmentProtobuf.writeDepartment(department, outputMessage.getBody());
+        } else {
+            DepartmentProtobuf.writeDepartments((List<Department>) value, outputMessage.getBody());
+        }
+    }
+
+    private static boolean isDepartment(Type type) {
+        return Department.class == type;
+    }
+
+    private static boolean isDepartmentList(Type type) {
+        if (Objects.isNull(type)) {
+            return false;
+        }
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolved.toClass()) && resolved.getGeneric(0).toClass() == Department.class;
+    }
+}
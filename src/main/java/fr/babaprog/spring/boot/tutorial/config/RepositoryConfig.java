@@ -0,0 +1,33 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+/**
+ * JPA and R2DBC repositories live in the same package; each stack only scans its own kind so the blocking and the
+ * reactive profile can share the domain model.
+ */
+@Configuration
+public class RepositoryConfig {
+
+    @Configuration
+    @Profile("!reactive")
+    @EnableJpaRepositories(basePackageClasses = DepartmentRepository.class,
+            excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ReactiveCrudRepository.class))
+    static class JpaRepositoryConfig {
+    }
+
+    @Configuration
+    @Profile("reactive")
+    @EnableR2dbcRepositories(basePackageClasses = DepartmentRepository.class,
+            excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JpaRepository.class))
+    static class R2dbcRepositoryConfig {
+    }
+}
@@ -0,0 +1,57 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling and MVC async work (such as the NDJSON export) on virtual threads, so a request
+ * blocked on JDBC no longer holds a platform thread. Enabled with department.threads.virtual=true (see the
+ * virtual-threads Spring profile and Maven profile); needs a Java 21 runtime.
+ * <p>
+ * department.threads.carriers sizes the carrier pool of the virtual thread scheduler, unless
+ * -Djdk.virtualThreadScheduler.parallelism is given on the command line.
+ */
+@Configuration
+@ConditionalOnProperty(value = "department.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+    @Value("${department.threads.carriers:0}")
+    private int carriers;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        // The scheduler reads the property once, when the first virtual thread starts, which is after this point
+        if (carriers > 0 && Objects.isNull(System.getProperty(PARALLELISM))) {
+            System.setProperty(PARALLELISM, String.valueOf(carriers));
+        }
+        // Looked up reflectively so the default build can keep targeting Java 17
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + Runtime.version(), e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+}
@@ -1,39 +1,272 @@
 package fr.babaprog.spring.boot.tutorial.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.babaprog.spring.boot.tutorial.config.DepartmentProtobuf;
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentBatchResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentDeleteResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentMultiGetResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
 import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
 import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
+import jakarta.annotation.PostConstruct;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 @RestController
 @RequestMapping("/departments")
+@Profile("!reactive")
 public class DepartmentController {
 
     @Autowired
     private DepartmentService departmentService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Prototype bean: a fresh builder carrying the spring.jackson.* settings for each binary format
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilders;
+
+    @Value("${department.http.max-age:0s}")
+    private Duration maxAge;
+
+    @Value("${department.http.gzip.enabled:true}")
+    private boolean gzipEnabled;
+
+    @Value("${department.http.gzip.min-size:1024}")
+    private int gzipMinSize;
+
+    @Value("${department.http.response-cache.max-departments:10000}")
+    private long maxCachedDepartments;
+
+    @Value("${department.changes.max-wait:PT25S}")
+    private Duration changesMaxWait;
+
+    @Value("${department.changes.stream-timeout:PT30M}")
+    private Duration changesStreamTimeout;
+
+    // Change events are written from here rather than from the thread that committed the write
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private AsyncTaskExecutor taskExecutor;
+
+    private static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    // A representation the list and detail endpoints can serve from cached bytes; only JSON is worth compressing
+    private record ResponseFormat(MediaType mediaType, String eTagSuffix, boolean gzip, DepartmentResponseCache cache) {
+    }
+
+    // In order of preference when Accept allows several equally
+    private List<ResponseFormat> responseFormats;
+
     private final Logger logger = Logger.getLogger(DepartmentController.class.getName());
 
+    @PostConstruct
+    void createResponseCaches() {
+        responseFormats = List.of(
+                new ResponseFormat(MediaType.APPLICATION_JSON, "", gzipEnabled,
+                        DepartmentResponseCache.jackson(objectMapper, gzipEnabled, gzipMinSize, maxCachedDepartments)),
+                new ResponseFormat(MediaType.APPLICATION_CBOR, "-cbor", false,
+                        DepartmentResponseCache.jackson(objectMapperBuilders.getObject().factory(new CBORFactory()).build(),
+                                false, 0, maxCachedDepartments)),
+                new ResponseFormat(MediaType.parseMediaType(APPLICATION_SMILE_VALUE), "-smile", false,
+                        DepartmentResponseCache.jackson(objectMapperBuilders.getObject().factory(new SmileFactory()).build(),
+                                false, 0, maxCachedDepartments)),
+                new ResponseFormat(DepartmentProtobuf.APPLICATION_PROTOBUF, "-protobuf", false,
+                        new DepartmentResponseCache(DepartmentProtobuf::encodeList, DepartmentProtobuf::encode, false, 0, maxCachedDepartments)));
+    }
+
     @PostMapping
     public Department saveDepartment(@Valid @RequestBody Department department) {
-        logger.info("Inside saveDepartment of DepartmentController");
+        logger.fine("Inside saveDepartment of DepartmentController");
         return departmentService.saveDepartment(department);
     }
 
+    @PostMapping("/batch")
+    public DepartmentBatchResult saveDepartments(@RequestBody List<Department> departments) {
+        logger.fine("Inside saveDepartments of DepartmentController");
+        return departmentService.saveDepartments(departments);
+    }
+
     @GetMapping
-    public List<Department> fetchDepartmentList() {
-        logger.info("Inside fetchDepartmentList of DepartmentController");
-        return departmentService.fetchDepartmentList();
+    public ResponseEntity<byte[]> fetchDepartmentList(HttpServletRequest request,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws HttpMediaTypeNotAcceptableException {
+        logger.fine("Inside fetchDepartmentList of DepartmentController");
+        ResponseFormat format = responseFormat(accept);
+        boolean acceptsGzip = DepartmentResponseCache.acceptsGzip(acceptEncoding);
+        // The table version is checked first so an unchanged list is neither loaded nor serialized
+        String version = departmentService.fetchDepartmentListVersion();
+        String eTag = listETag(version, format, acceptsGzip);
+        // Checked without a response so the ETag header is left to the bytes actually served; Spring answers the
+        // bodiless entity with 304 against the same If-None-Match
+        if (Objects.nonNull(eTag) && new ServletWebRequest(request).checkNotModified(eTag)) {
+            return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl()).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        // With replicas the list may be read elsewhere than that version, so its ETag is the version read with it
+        DepartmentResponseCache.EncodedList list = format.cache().list(version, departmentService::fetchDepartmentList);
+        return encodedResponse(format, list.encoded(), acceptsGzip, listETag(list.version(), format, acceptsGzip));
+    }
+
+    private static String listETag(String version, ResponseFormat format, boolean acceptsGzip) {
+        return Objects.isNull(version) ? null : version + format.eTagSuffix() + (acceptsGzip && format.gzip() ? "-gzip" : "");
+    }
+
+    // Sparse fieldset, e.g. ?fields=departmentId,departmentName; only those columns are read and serialized
+    @GetMapping(params = {"fields", "!limit", "!ids"})
+    public List<Map<String, Object>> fetchDepartmentFields(@RequestParam("fields") List<String> fields) {
+        logger.fine("Inside fetchDepartmentFields of DepartmentController");
+        return departmentService.fetchDepartmentList(fields);
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public DepartmentPage fetchDepartmentPage(@RequestParam(value = "after", required = false) Long after,
+                                              @RequestParam("limit") int limit) {
+        return departmentService.fetchDepartmentPage(after, limit);
+    }
+
+    @GetMapping("/search")
+    public DepartmentSearchResult searchDepartments(@RequestParam("q") String query,
+                                                    @RequestParam(value = "page", defaultValue = "0") int page,
+                                                    @RequestParam(value = "size", defaultValue = "20") int size) {
+        logger.fine("Inside searchDepartments of DepartmentController");
+        return departmentService.searchDepartments(query, page, size);
+    }
+
+    @GetMapping(params = "ids")
+    public DepartmentMultiGetResult fetchDepartmentsByIds(@RequestParam("ids") List<Long> departmentIds) {
+        logger.fine("Inside fetchDepartmentsByIds of DepartmentController");
+        return departmentService.fetchDepartmentsByIds(departmentIds);
+    }
+
+    // Same as GET ?ids= for id lists too long for a URL
+    @PostMapping("/lookup")
+    public DepartmentMultiGetResult lookupDepartments(@RequestBody List<Long> departmentIds) {
+        logger.fine("Inside lookupDepartments of DepartmentController");
+        return departmentService.fetchDepartmentsByIds(departmentIds);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportDepartments() {
+        logger.fine("Inside exportDepartments of DepartmentController");
+        ObjectWriter writer = objectMapper.writerFor(Department.class);
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            departmentService.exportDepartments(department -> {
+                try {
+                    out.write(writer.writeValueAsBytes(department));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Long-poll: answers as soon as there are changes after "since", or with an empty batch after department.changes.max-wait
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<DepartmentChangeBatch>> fetchDepartmentChanges(@RequestParam(value = "since", required = false) String since) {
+        logger.fine("Inside fetchDepartmentChanges of DepartmentController");
+        return departmentService.fetchDepartmentChanges(since, changesMaxWait)
+                .thenApply(batch -> ResponseEntity.status(batch.isResyncRequired() ? HttpStatus.GONE : HttpStatus.OK).body(batch));
+    }
+
+    // Same feed as Server-Sent Events; a reconnecting client resumes from Last-Event-ID
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDepartmentChanges(@RequestParam(value = "since", required = false) String since,
+                                              @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        logger.fine("Inside streamDepartmentChanges of DepartmentController");
+        SseEmitter emitter = new SseEmitter(changesStreamTimeout.toMillis());
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+        streamChanges(emitter, open, Objects.nonNull(lastEventId) ? lastEventId : since);
+        return emitter;
+    }
+
+    private void streamChanges(SseEmitter emitter, AtomicBoolean open, String since) {
+        departmentService.fetchDepartmentChanges(since, changesMaxWait).thenAcceptAsync(batch -> {
+            if (!open.get()) {
+                return;
+            }
+            try {
+                if (batch.isResyncRequired()) {
+                    emitter.send(SseEmitter.event().name("resync").data(batch.getLastSequence()));
+                } else if (batch.getChanges().isEmpty()) {
+                    // Lets proxies and clients notice a dead connection while nothing changes
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+                for (DepartmentChange change : batch.getChanges()) {
+                    emitter.send(SseEmitter.event()
+                            .id(change.getSequence())
+                            .name(change.getType().name().toLowerCase())
+                            .data(change, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+                return;
+            }
+            streamChanges(emitter, open, batch.getLastSequence());
+        }, taskExecutor);
     }
 
     @GetMapping("/{id}")
-    public Department fetchDepartmentById(@PathVariable("id") Long departmentId) throws DepartmentNotFoundException {
-        return departmentService.fetchDepartmentById(departmentId);
+    public ResponseEntity<byte[]> fetchDepartmentById(@PathVariable("id") Long departmentId,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws DepartmentNotFoundException, HttpMediaTypeNotAcceptableException {
+        ResponseFormat format = responseFormat(accept);
+        return conditionalResponse(format, departmentService.fetchDepartmentById(departmentId), acceptEncoding);
+    }
+
+    @GetMapping(value = "/{id}", params = "fields")
+    public Map<String, Object> fetchDepartmentFieldsById(@PathVariable("id") Long departmentId,
+                                                         @RequestParam("fields") List<String> fields) throws DepartmentNotFoundException {
+        return departmentService.fetchDepartmentById(departmentId, fields);
     }
 
     @DeleteMapping("/{id}")
@@ -43,13 +276,95 @@ public class DepartmentController {
         return "Department deleted Successfully!!!";
     }
 
-    @PutMapping("/{id}")
-    public Department updateDepartment(@PathVariable("id") Long departmentId, @RequestBody Department department) {
+    @DeleteMapping(params = "ids")
+    public DepartmentDeleteResult deleteDepartmentsByIds(@RequestParam("ids") List<Long> departmentIds) {
+        logger.fine("Inside deleteDepartmentsByIds of DepartmentController");
+        return departmentService.deleteDepartmentsByIds(departmentIds);
+    }
+
+    // Same as DELETE ?ids= for id lists too long for a URL
+    @PostMapping("/bulk-delete")
+    public DepartmentDeleteResult bulkDeleteDepartments(@RequestBody List<Long> departmentIds) {
+        logger.fine("Inside bulkDeleteDepartments of DepartmentController");
+        return departmentService.deleteDepartmentsByIds(departmentIds);
+    }
+
+    @RequestMapping(value = "/{id}", method = {RequestMethod.PUT, RequestMethod.PATCH})
+    public Department updateDepartment(@PathVariable("id") Long departmentId, @RequestBody Department department) throws DepartmentNotFoundException {
         return departmentService.updateDepartment(departmentId, department);
     }
 
     @GetMapping("/name/{name}")
-    public Department fetchDepartmentByName(@PathVariable("name") String departmentName) {
-        return departmentService.fetchDepartmentByName(departmentName);
+    public ResponseEntity<byte[]> fetchDepartmentByName(@PathVariable("name") String departmentName,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws HttpMediaTypeNotAcceptableException {
+        ResponseFormat format = responseFormat(accept);
+        return conditionalResponse(format, departmentService.fetchDepartmentByName(departmentName), acceptEncoding);
+    }
+
+    // Spring answers a matching If-None-Match with 304 before the body is written, and otherwise the cached bytes are
+    // written as they are
+    private ResponseEntity<byte[]> conditionalResponse(ResponseFormat format, Department department, String acceptEncoding) {
+        if (Objects.isNull(department)) {
+            return ResponseEntity.ok().build();
+        }
+        DepartmentResponseCache.Encoded encoded = format.cache().department(department);
+        boolean acceptsGzip = DepartmentResponseCache.acceptsGzip(acceptEncoding);
+        String eTag = department.getDepartmentId() + "-" + department.getVersion() + format.eTagSuffix()
+                + (encoded.isGzip(acceptsGzip) ? "-gzip" : "");
+        return encodedResponse(format, encoded, acceptsGzip, eTag);
+    }
+
+    // Highest quality first, then the order of the Accept header; JSON when Accept is missing or unparsable, and 406
+    // when it allows none of the formats
+    private ResponseFormat responseFormat(String accept) throws HttpMediaTypeNotAcceptableException {
+        ResponseFormat json = responseFormats.get(0);
+        if (Objects.isNull(accept) || accept.isBlank()) {
+            return json;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return json;
+        }
+        ResponseFormat best = null;
+        double bestQuality = 0;
+        for (MediaType mediaType : accepted) {
+            double quality = mediaType.getQualityValue();
+            if (quality <= bestQuality) {
+                continue;
+            }
+            for (ResponseFormat format : responseFormats) {
+                if (mediaType.includes(format.mediaType())) {
+                    best = format;
+                    bestQuality = quality;
+                    break;
+                }
+            }
+        }
+        if (Objects.isNull(best)) {
+            throw new HttpMediaTypeNotAcceptableException(responseFormats.stream().map(ResponseFormat::mediaType).toList());
+        }
+        return best;
+    }
+
+    // A representation per format and encoding, each with its own ETag
+    private ResponseEntity<byte[]> encodedResponse(ResponseFormat format, DepartmentResponseCache.Encoded encoded,
+                                                   boolean acceptsGzip, String eTag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl())
+                .contentType(format.mediaType())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (encoded.isGzip(acceptsGzip)) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(encoded.body(acceptsGzip));
+    }
+
+    private CacheControl cacheControl() {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).mustRevalidate();
     }
 }
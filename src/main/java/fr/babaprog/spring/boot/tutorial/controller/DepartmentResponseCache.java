@@ -0,0 +1,142 @@
+package fr.babaprog.spring.boot.tutorial.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-encoded bytes in one representation (JSON, and its gzip form, or a binary format) for the department list and
+ * for single departments. The list is keyed by the table version and a department by its id and version, so every
+ * write through the service makes the old bytes unreachable and encoding runs once per version instead of once per
+ * request.
+ */
+final class DepartmentResponseCache {
+
+    interface Encoder<T> {
+        byte[] encode(T value) throws IOException;
+    }
+
+    record Encoded(byte[] bytes, byte[] gzip) {
+
+        // Falls back to the plain bytes when the payload was too small to be worth compressing
+        boolean isGzip(boolean acceptsGzip) {
+            return acceptsGzip && Objects.nonNull(gzip);
+        }
+
+        byte[] body(boolean acceptsGzip) {
+            return isGzip(acceptsGzip) ? gzip : bytes;
+        }
+    }
+
+    record EncodedList(String version, Encoded encoded) {
+    }
+
+    private final Encoder<List<Department>> listEncoder;
+    private final Encoder<Department> departmentEncoder;
+    private final boolean gzipEnabled;
+    private final int gzipMinSize;
+    private final Cache<String, Encoded> departments;
+    private volatile EncodedList list;
+
+    DepartmentResponseCache(Encoder<List<Department>> listEncoder, Encoder<Department> departmentEncoder,
+                            boolean gzipEnabled, int gzipMinSize, long maxDepartments) {
+        this.listEncoder = listEncoder;
+        this.departmentEncoder = departmentEncoder;
+        this.gzipEnabled = gzipEnabled;
+        this.gzipMinSize = gzipMinSize;
+        this.departments = Caffeine.newBuilder().maximumSize(maxDepartments).build();
+    }
+
+    static DepartmentResponseCache jackson(ObjectMapper objectMapper, boolean gzipEnabled, int gzipMinSize, long maxDepartments) {
+        return new DepartmentResponseCache(
+                objectMapper.writerFor(new TypeReference<List<Department>>() {
+                })::writeValueAsBytes,
+                objectMapper.writerFor(Department.class)::writeValueAsBytes,
+                gzipEnabled, gzipMinSize, maxDepartments);
+    }
+
+    // The cached bytes when they are for this version, otherwise the list as loaded, under the version it was read at
+    EncodedList list(String version, Supplier<DepartmentList> loader) {
+        EncodedList current = list;
+        if (Objects.nonNull(version) && Objects.nonNull(current) && current.version().equals(version)) {
+            return current;
+        }
+        DepartmentList loaded = loader.get();
+        EncodedList encoded = new EncodedList(loaded.getVersion(), encode(listEncoder, loaded.getDepartments()));
+        if (Objects.nonNull(loaded.getVersion())) {
+            list = encoded;
+        }
+        return encoded;
+    }
+
+    Encoded department(Department department) {
+        if (Objects.isNull(department.getVersion())) {
+            return encode(departmentEncoder, department);
+        }
+        return departments.get(department.getDepartmentId() + "-" + department.getVersion(),
+                key -> encode(departmentEncoder, department));
+    }
+
+    private <T> Encoded encode(Encoder<T> encoder, T value) {
+        try {
+            byte[] bytes = encoder.encode(value);
+            return new Encoded(bytes, gzipEnabled && bytes.length >= gzipMinSize ? gzip(bytes) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    // Honours q=0, which explicitly refuses an encoding; a malformed q value is taken as a refusal too
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (Objects.isNull(acceptEncoding)) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") && qualityOf(parameter.substring(2)) == 0) {
+                    refused = true;
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double qualityOf(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
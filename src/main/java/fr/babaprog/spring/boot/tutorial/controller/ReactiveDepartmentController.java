@@ -0,0 +1,55 @@
+package fr.babaprog.spring.boot.tutorial.controller;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.service.ReactiveDepartmentService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link DepartmentController}, served by WebFlux when the reactive profile is active.
+ */
+@RestController
+@RequestMapping("/departments")
+@Profile("reactive")
+public class ReactiveDepartmentController {
+
+    @Autowired
+    private ReactiveDepartmentService reactiveDepartmentService;
+
+    @PostMapping
+    public Mono<Department> saveDepartment(@Valid @RequestBody Department department) {
+        return reactiveDepartmentService.saveDepartment(department);
+    }
+
+    // Rows are written as the driver emits them, with backpressure, instead of being collected into a list
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Department> fetchDepartmentList() {
+        return reactiveDepartmentService.fetchDepartmentList();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Department> fetchDepartmentById(@PathVariable("id") Long departmentId) {
+        return reactiveDepartmentService.fetchDepartmentById(departmentId);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<String> deleteDepartmentById(@PathVariable("id") Long departmentId) {
+        return reactiveDepartmentService.deleteDepartmentById(departmentId)
+                .thenReturn("Department deleted Successfully!!!");
+    }
+
+    @RequestMapping(value = "/{id}", method = {RequestMethod.PUT, RequestMethod.PATCH})
+    public Mono<Department> updateDepartment(@PathVariable("id") Long departmentId, @RequestBody Department department) {
+        return reactiveDepartmentService.updateDepartment(departmentId, department);
+    }
+
+    @GetMapping("/name/{name}")
+    public Mono<Department> fetchDepartmentByName(@PathVariable("name") String departmentName) {
+        return reactiveDepartmentService.fetchDepartmentByName(departmentName);
+    }
+}
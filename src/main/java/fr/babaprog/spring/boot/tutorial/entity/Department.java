@@ -1,9 +1,17 @@
 package fr.babaprog.spring.boot.tutorial.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
@@ -11,7 +19,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Locale;
+import java.util.Objects;
+
 @Entity
+@Table(indexes = @Index(name = "idx_department_normalized_name", columnList = "normalized_name"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,7 +31,9 @@ import lombok.NoArgsConstructor;
 public class Department {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @org.springframework.data.annotation.Id // identifier for the R2DBC mapping of the reactive profile
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "department_seq")
+    @SequenceGenerator(name = "department_seq", sequenceName = "department_seq", allocationSize = 50)
     private Long departmentId;
 
     @NotBlank(message = "Please Add a Department Name")
@@ -27,4 +41,28 @@ public class Department {
     private String departmentName;
     private String departmentAddress;
     private String departmentCode;
+
+    // Optimistic lock; clients send it back on update to detect concurrent writes
+    @Version
+    private Long version;
+
+    // Case-folded, trimmed copy of departmentName so name lookups can use an index
+    @JsonIgnore
+    @Column(name = "normalized_name")
+    private String normalizedName;
+
+    // Table version of the write that last touched this row, so the heap snapshot only reloads rows written since
+    @JsonIgnore
+    @Column(name = "table_version")
+    private Long tableVersion;
+
+    @PrePersist
+    @PreUpdate
+    void normalizeDepartmentName() {
+        normalizedName = normalizeName(departmentName);
+    }
+
+    public static String normalizeName(String departmentName) {
+        return Objects.isNull(departmentName) ? null : departmentName.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,18 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentBatchResult {
+
+    private List<Department> departments;
+    // Failure message for each rejected item, keyed by its index in the request
+    private Map<Integer, String> errors;
+}
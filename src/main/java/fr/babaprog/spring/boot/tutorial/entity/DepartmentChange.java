@@ -0,0 +1,22 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // Token of this change, "<epoch>-<sequence>"; pass it as "since" to resume after it
+    private String sequence;
+    private Type type;
+    private Long departmentId;
+    // The department as written, null for deletions
+    private Department department;
+}
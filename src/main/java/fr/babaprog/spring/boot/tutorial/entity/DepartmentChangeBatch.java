@@ -0,0 +1,19 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentChangeBatch {
+
+    private List<DepartmentChange> changes;
+    // Sequence to pass as "since" on the next call
+    private String lastSequence;
+    // The requested changes are no longer buffered: reload the full list, then follow from lastSequence
+    private boolean resyncRequired;
+}
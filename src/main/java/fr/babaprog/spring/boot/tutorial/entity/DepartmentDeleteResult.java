@@ -0,0 +1,15 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentDeleteResult {
+
+    private int requested;
+    // Ids that did not exist are not counted
+    private int deleted;
+}
@@ -0,0 +1,17 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentList {
+
+    // Table version read in the same transaction as the departments, never newer than they are
+    private String version;
+    private List<Department> departments;
+}
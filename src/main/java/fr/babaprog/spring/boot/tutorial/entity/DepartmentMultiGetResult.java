@@ -0,0 +1,17 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentMultiGetResult {
+
+    // In the order of the requested ids
+    private List<Department> departments;
+    private List<Long> missingIds;
+}
@@ -0,0 +1,17 @@
+package fr.babaprog.spring.boot.tutorial.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartmentPage {
+
+    private List<Department> departments;
+    // departmentId to pass as "after" for the next page, null on the last page
+    private Long nextCursor;
+}
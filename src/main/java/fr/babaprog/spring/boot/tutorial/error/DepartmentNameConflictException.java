@@ -0,0 +1,8 @@
+package fr.babaprog.spring.boot.tutorial.error;
+
+public class DepartmentNameConflictException extends RuntimeException {
+
+    public DepartmentNameConflictException(String message) {
+        super(message);
+    }
+}
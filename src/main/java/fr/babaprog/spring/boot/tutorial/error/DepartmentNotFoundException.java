@@ -2,11 +2,13 @@ package fr.babaprog.spring.boot.tutorial.error;
 
 public class DepartmentNotFoundException extends Exception {
 
+    // Thrown for every lookup of a missing id, so no stack trace is captured
     public DepartmentNotFoundException() {
+        super(null, null, false, false);
     }
 
     public DepartmentNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public DepartmentNotFoundException(String message, Throwable cause) {
@@ -0,0 +1,8 @@
+package fr.babaprog.spring.boot.tutorial.error;
+
+public class DepartmentWriteRejectedException extends RuntimeException {
+
+    public DepartmentWriteRejectedException(String message) {
+        super(message);
+    }
+}
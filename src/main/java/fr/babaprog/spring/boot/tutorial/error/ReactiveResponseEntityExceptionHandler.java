@@ -0,0 +1,28 @@
+package fr.babaprog.spring.boot.tutorial.error;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.reactive.result.method.annotation.ResponseEntityExceptionHandler;
+
+@ControllerAdvice
+@Profile("reactive")
+public class ReactiveResponseEntityExceptionHandler extends ResponseEntityExceptionHandler {
+
+    @ExceptionHandler(DepartmentNotFoundException.class)
+    public ResponseEntity<ErrorMessage> departmentNotFoundException(DepartmentNotFoundException exception) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.NOT_FOUND, exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorMessage> optimisticLockingFailureException(OptimisticLockingFailureException exception) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.CONFLICT, "Department Was Modified Concurrently");
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
+    }
+}
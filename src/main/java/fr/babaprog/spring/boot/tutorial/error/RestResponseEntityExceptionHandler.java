@@ -1,6 +1,12 @@
 package fr.babaprog.spring.boot.tutorial.error;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -8,15 +14,66 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.io.IOException;
+
 @ControllerAdvice
 @ResponseStatus
+@Profile("!reactive")
 public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private static final String DEPARTMENT_NOT_AVAILABLE = "Department Not Available";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Lookups of missing ids are the most frequent error, so their response is serialized once; the headers of a
+    // ResponseEntity are read-only and the array is never handed out, so every request can share it
+    private ResponseEntity<byte[]> departmentNotAvailableResponse;
+
+    @PostConstruct
+    void serializeDepartmentNotAvailable() throws IOException {
+        departmentNotAvailableResponse = ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(objectMapper.writeValueAsBytes(new ErrorMessage(HttpStatus.NOT_FOUND, DEPARTMENT_NOT_AVAILABLE)));
+    }
+
     @ExceptionHandler(DepartmentNotFoundException.class)
-    public ResponseEntity<ErrorMessage> departmentNotFoundException(DepartmentNotFoundException exception, WebRequest request) {
+    public ResponseEntity<?> departmentNotFoundException(DepartmentNotFoundException exception, WebRequest request) {
+        if (DEPARTMENT_NOT_AVAILABLE.equals(exception.getMessage())) {
+            return departmentNotAvailableResponse;
+        }
         ErrorMessage message = new ErrorMessage(HttpStatus.NOT_FOUND, exception.getMessage());
 
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message);
     }
 
+    @ExceptionHandler(DepartmentNameConflictException.class)
+    public ResponseEntity<ErrorMessage> departmentNameConflictException(DepartmentNameConflictException exception, WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.CONFLICT, exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
+    }
+
+    @ExceptionHandler(UnknownDepartmentFieldException.class)
+    public ResponseEntity<ErrorMessage> unknownDepartmentFieldException(UnknownDepartmentFieldException exception, WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST, exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+    }
+
+    @ExceptionHandler(DepartmentWriteRejectedException.class)
+    public ResponseEntity<ErrorMessage> departmentWriteRejectedException(DepartmentWriteRejectedException exception, WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(message);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorMessage> optimisticLockingFailureException(OptimisticLockingFailureException exception, WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.CONFLICT, "Department Was Modified Concurrently");
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
+    }
+
 }
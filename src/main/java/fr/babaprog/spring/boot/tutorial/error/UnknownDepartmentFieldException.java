@@ -0,0 +1,8 @@
+package fr.babaprog.spring.boot.tutorial.error;
+
+public class UnknownDepartmentFieldException extends RuntimeException {
+
+    public UnknownDepartmentFieldException(String message) {
+        super(message);
+    }
+}
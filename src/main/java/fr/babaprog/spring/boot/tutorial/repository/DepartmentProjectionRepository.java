@@ -0,0 +1,19 @@
+package fr.babaprog.spring.boot.tutorial.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads a caller-chosen subset of the department columns. Only those columns are selected and rows come back as
+ * plain maps, so no entity is instantiated, managed or dirty-checked.
+ */
+public interface DepartmentProjectionRepository {
+
+    List<String> FIELDS = List.of("departmentId", "departmentName", "departmentAddress", "departmentCode", "version");
+
+    // Keys follow the order of fields
+    List<Map<String, Object>> findAllProjected(List<String> fields);
+
+    Optional<Map<String, Object>> findProjectedById(Long departmentId, List<String> fields);
+}
@@ -0,0 +1,57 @@
+package fr.babaprog.spring.boot.tutorial.repository;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class DepartmentProjectionRepositoryImpl implements DepartmentProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findAllProjected(List<String> fields) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Department> department = query.from(Department.class);
+        query.multiselect(selections(department, fields)).orderBy(builder.asc(department.get("departmentId")));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> toMap(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findProjectedById(Long departmentId, List<String> fields) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Department> department = query.from(Department.class);
+        query.multiselect(selections(department, fields)).where(builder.equal(department.get("departmentId"), departmentId));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .findFirst()
+                .map(tuple -> toMap(tuple, fields));
+    }
+
+    private static List<Selection<?>> selections(Root<Department> department, List<String> fields) {
+        return fields.stream().<Selection<?>>map(field -> department.get(field).alias(field)).toList();
+    }
+
+    private static Map<String, Object> toMap(Tuple tuple, List<String> fields) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String field : fields) {
+            row.put(field, tuple.get(field));
+        }
+        return row;
+    }
+}
@@ -1,13 +1,110 @@
 package fr.babaprog.spring.boot.tutorial.repository;
 
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
-public interface DepartmentRepository extends JpaRepository<Department, Long> {
+public interface DepartmentRepository extends JpaRepository<Department, Long>, DepartmentProjectionRepository {
 
     Department findByDepartmentName(String departmentName);
 
     Department findByDepartmentNameIgnoreCase(String departmentName);
+
+    // Oldest department wins when several share a name, instead of an arbitrary row
+    Department findFirstByNormalizedNameOrderByDepartmentIdAsc(String normalizedName);
+
+    boolean existsByNormalizedNameAndDepartmentIdNot(String normalizedName, Long departmentId);
+
+    @Modifying
+    @Query("update Department d set d.normalizedName = lower(trim(d.departmentName)) where d.normalizedName is null")
+    int backfillNormalizedNames();
+
+    @Modifying
+    @Query("update Department d set d.version = 0 where d.version is null")
+    int backfillVersions();
+
+    // Null arguments keep the current column value; a null version skips the optimistic check
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            update Department d set
+                d.departmentName = coalesce(:departmentName, d.departmentName),
+                d.normalizedName = coalesce(:normalizedName, d.normalizedName),
+                d.departmentCode = coalesce(:departmentCode, d.departmentCode),
+                d.departmentAddress = coalesce(:departmentAddress, d.departmentAddress),
+                d.version = coalesce(d.version, 0) + 1,
+                d.tableVersion = :tableVersion
+            where d.departmentId = :departmentId and (:version is null or d.version = :version)""")
+    int updateDepartment(@Param("departmentId") Long departmentId,
+                         @Param("version") Long version,
+                         @Param("tableVersion") Long tableVersion,
+                         @Param("departmentName") String departmentName,
+                         @Param("normalizedName") String normalizedName,
+                         @Param("departmentCode") String departmentCode,
+                         @Param("departmentAddress") String departmentAddress);
+
+    // Called by every transaction that writes departments. The row stays locked until that transaction ends, so
+    // writers take versions one at a time and a version is never visible before the ones below it
+    @Modifying
+    @Query(value = "update department_table_version set version = version + 1", nativeQuery = true)
+    int incrementTableVersion();
+
+    // Single-row read, so checking the ETag of the department list costs the same whatever the table size
+    @Query(value = "select version from department_table_version", nativeQuery = true)
+    Long findTableVersion();
+
+    // Tombstones for the rows about to be deleted; ids that do not exist get none
+    @Modifying
+    @Query(value = """
+            insert into department_deletion (department_id, table_version, deleted_at)
+            select department_id, :tableVersion, :deletedAt from department where department_id in :departmentIds""",
+            nativeQuery = true)
+    int recordDeletions(@Param("departmentIds") Collection<Long> departmentIds,
+                        @Param("tableVersion") Long tableVersion,
+                        @Param("deletedAt") Instant deletedAt);
+
+    @Modifying
+    @Query(value = "delete from department_deletion where deleted_at < :deletedBefore", nativeQuery = true)
+    int pruneDeletions(@Param("deletedBefore") Instant deletedBefore);
+
+    @Query(value = "select department_id from department_deletion where table_version > :tableVersion", nativeQuery = true)
+    List<Long> findDeletedDepartmentIds(@Param("tableVersion") Long tableVersion);
+
+    List<Department> findByDepartmentIdIn(Collection<Long> departmentIds);
+
+    // Single statement: unlike deleteById, nothing is loaded before the delete
+    @Modifying
+    @Query("delete from Department d where d.departmentId in :departmentIds")
+    int deleteByDepartmentIdIn(@Param("departmentIds") Collection<Long> departmentIds);
+
+    // Keyset pagination: seeks on the primary key instead of using an OFFSET
+    List<Department> findByDepartmentIdGreaterThanOrderByDepartmentIdAsc(Long departmentId, Pageable pageable);
+
+    // Must be consumed inside a transaction; rows are fetched from the cursor in chunks of the fetch size
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select d from Department d order by d.departmentId")
+    Stream<Department> streamAllDepartments();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select d.departmentId from Department d")
+    Stream<Long> streamDepartmentIds();
+
+    // Rows written after a table version, through the index on table_version, so the heap snapshot reads only those
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select d from Department d where d.tableVersion > :tableVersion")
+    Stream<Department> streamDepartmentsWrittenAfter(@Param("tableVersion") Long tableVersion);
 }
@@ -0,0 +1,57 @@
+package fr.babaprog.spring.boot.tutorial.repository;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+@Repository
+public interface ReactiveDepartmentRepository extends R2dbcRepository<Department, Long> {
+
+    Mono<Department> findFirstByNormalizedNameOrderByDepartmentIdAsc(String normalizedName);
+
+    // Same table version as DepartmentRepository#incrementTableVersion, so servlet nodes see reactive writes
+    @Modifying
+    @Query("update department_table_version set version = version + 1")
+    Mono<Integer> incrementTableVersion();
+
+    @Query("select version from department_table_version")
+    Mono<Long> findTableVersion();
+
+    // Same tombstones as DepartmentRepository#recordDeletions
+    @Modifying
+    @Query("""
+            insert into department_deletion (department_id, table_version, deleted_at)
+            select department_id, :tableVersion, :deletedAt from department where department_id = :departmentId""")
+    Mono<Integer> recordDeletion(@Param("departmentId") Long departmentId,
+                                 @Param("tableVersion") Long tableVersion,
+                                 @Param("deletedAt") Instant deletedAt);
+
+    @Modifying
+    @Query("delete from department_deletion where deleted_at < :deletedBefore")
+    Mono<Integer> pruneDeletions(@Param("deletedBefore") Instant deletedBefore);
+
+    // Same single-statement partial update as DepartmentRepository#updateDepartment
+    @Modifying
+    @Query("""
+            update department set
+                department_name = coalesce(:departmentName, department_name),
+                normalized_name = coalesce(:normalizedName, normalized_name),
+                department_code = coalesce(:departmentCode, department_code),
+                department_address = coalesce(:departmentAddress, department_address),
+                version = coalesce(version, 0) + 1,
+                table_version = :tableVersion
+            where department_id = :departmentId and version = coalesce(:version, version)""")
+    Mono<Integer> updateDepartment(@Param("departmentId") Long departmentId,
+                                   @Param("version") Long version,
+                                   @Param("tableVersion") Long tableVersion,
+                                   @Param("departmentName") String departmentName,
+                                   @Param("normalizedName") String normalizedName,
+                                   @Param("departmentCode") String departmentCode,
+                                   @Param("departmentAddress") String departmentAddress);
+}
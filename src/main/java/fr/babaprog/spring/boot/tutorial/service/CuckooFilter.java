@@ -0,0 +1,212 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cuckoo filter over {@code long} keys: 16-bit fingerprints in buckets of four, so with the table at most 95% full
+ * a key that was never added is reported as present less than 0.013% of the time, while a key that was added is
+ * always reported. Unlike a Bloom filter it supports removal, as long as only added keys are removed.
+ * <p>
+ * Lookups use an optimistic read and only take the lock when a write got in the way.
+ */
+final class CuckooFilter {
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD = 0.95;
+
+    private final short[] table;
+    private final int bucketMask;
+    private final StampedLock lock = new StampedLock();
+    private int size;
+    // Fingerprint left homeless by a failed insertion; kept so that no added key is ever lost
+    private short victim;
+    private int victimBucket;
+
+    CuckooFilter(long capacity) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) Math.ceil(capacity / (BUCKET_SIZE * MAX_LOAD))) - 1) << 1;
+        if (buckets * BUCKET_SIZE > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Cuckoo filter capacity too large: " + capacity);
+        }
+        table = new short[(int) Math.max(1, buckets) * BUCKET_SIZE];
+        bucketMask = table.length / BUCKET_SIZE - 1;
+    }
+
+    /**
+     * @return false when the filter is full; the key is still remembered, but later insertions will fail too
+     */
+    boolean add(long key) {
+        long hash = hash(key);
+        short fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+
+        long stamp = lock.writeLock();
+        try {
+            if (victim != 0) {
+                return false;
+            }
+            int alternate = alternate(bucket, fingerprint);
+            if (insert(bucket, fingerprint) || insert(alternate, fingerprint)) {
+                size++;
+                return true;
+            }
+            // Both buckets full: evict a random entry to its other bucket, and so on
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int current = random.nextBoolean() ? bucket : alternate;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = current * BUCKET_SIZE + random.nextInt(BUCKET_SIZE);
+                short evicted = table[slot];
+                table[slot] = fingerprint;
+                fingerprint = evicted;
+                current = alternate(current, fingerprint);
+                if (insert(current, fingerprint)) {
+                    size++;
+                    return true;
+                }
+            }
+            victim = fingerprint;
+            victimBucket = current;
+            size++;
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean mightContain(long key) {
+        long hash = hash(key);
+        short fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+        int alternate = alternate(bucket, fingerprint);
+
+        long stamp = lock.tryOptimisticRead();
+        boolean found = contains(bucket, alternate, fingerprint);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = contains(bucket, alternate, fingerprint);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    // Removing a key that was never added may remove another key's fingerprint
+    boolean remove(long key) {
+        long hash = hash(key);
+        short fingerprint = fingerprint(hash);
+        int bucket = index(hash);
+        int alternate = alternate(bucket, fingerprint);
+
+        long stamp = lock.writeLock();
+        try {
+            if (victim == fingerprint && (victimBucket == bucket || victimBucket == alternate)) {
+                victim = 0;
+                size--;
+                return true;
+            }
+            if (delete(bucket, fingerprint) || delete(alternate, fingerprint)) {
+                size--;
+                // Room was freed, so the victim may have a place again
+                if (victim != 0) {
+                    short homeless = victim;
+                    victim = 0;
+                    if (!insert(victimBucket, homeless) && !insert(alternate(victimBucket, homeless), homeless)) {
+                        victim = homeless;
+                    }
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // True once an insertion failed, until a removal made room for its fingerprint
+    boolean isFull() {
+        long stamp = lock.readLock();
+        try {
+            return victim != 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int slots() {
+        return table.length;
+    }
+
+    // Upper bound on the chance that a key never added is reported: 2 buckets x 4 slots, 16-bit fingerprints
+    double expectedFalsePositiveRate() {
+        return Math.min(1.0, 2.0 * BUCKET_SIZE * ((double) size() / table.length) / 65535);
+    }
+
+    private boolean contains(int bucket, int alternate, short fingerprint) {
+        if (victim == fingerprint && (victimBucket == bucket || victimBucket == alternate)) {
+            return true;
+        }
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (table[bucket * BUCKET_SIZE + i] == fingerprint || table[alternate * BUCKET_SIZE + i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean insert(int bucket, short fingerprint) {
+        for (int i = bucket * BUCKET_SIZE; i < (bucket + 1) * BUCKET_SIZE; i++) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean delete(int bucket, short fingerprint) {
+        for (int i = bucket * BUCKET_SIZE; i < (bucket + 1) * BUCKET_SIZE; i++) {
+            if (table[i] == fingerprint) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int index(long hash) {
+        return (int) hash & bucketMask;
+    }
+
+    // XOR with the fingerprint's hash is its own inverse, so either bucket leads to the other
+    private int alternate(int bucket, short fingerprint) {
+        return (bucket ^ (fingerprint * 0x5bd1e995)) & bucketMask;
+    }
+
+    // 0 marks an empty slot
+    private static short fingerprint(long hash) {
+        short fingerprint = (short) (hash >>> 48);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    // Finalizer of MurmurHash3
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
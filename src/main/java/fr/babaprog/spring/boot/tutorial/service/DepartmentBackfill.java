@@ -0,0 +1,41 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.logging.Logger;
+
+/**
+ * Fills normalized_name and version for rows written before those columns existed. Runs once per start and is a
+ * no-op when every row is already up to date.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(value = "department.backfill", havingValue = "true", matchIfMissing = true)
+public class DepartmentBackfill implements ApplicationRunner {
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    private final Logger logger = Logger.getLogger(DepartmentBackfill.class.getName());
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        int normalized = departmentRepository.backfillNormalizedNames();
+        if (normalized > 0) {
+            logger.info("Backfilled normalized name of " + normalized + " departments");
+        }
+
+        int versioned = departmentRepository.backfillVersions();
+        if (versioned > 0) {
+            logger.info("Backfilled version of " + versioned + " departments");
+        }
+    }
+}
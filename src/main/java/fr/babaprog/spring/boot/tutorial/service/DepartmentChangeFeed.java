@@ -0,0 +1,160 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequenced log of the department writes made through this node, kept in a ring buffer of
+ * {@code department.changes.capacity} entries so clients can follow changes instead of reloading the list.
+ * <p>
+ * Sequences start again from 1 when the application restarts and each node counts its own, so they are handed out as
+ * tokens carrying a random epoch drawn at startup. A client asking with a token of another epoch, a sequence older
+ * than the buffer or newer than the last one written gets {@code resyncRequired} and must reload the list.
+ */
+@Component
+@Profile("!reactive")
+public class DepartmentChangeFeed {
+
+    private record Waiter(long since, CompletableFuture<DepartmentChangeBatch> future) {
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${department.changes.capacity:10000}")
+    private int capacity;
+
+    @Value("${department.changes.max-batch:500}")
+    private int maxBatch;
+
+    private DepartmentChange[] buffer;
+    private final String epoch = HexFormat.of().toHexDigits(new SecureRandom().nextLong());
+    // Sequence of the last change appended, 0 before the first one
+    private long lastSequence;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    @PostConstruct
+    void createBuffer() {
+        buffer = new DepartmentChange[capacity];
+        Gauge.builder("department.changes.waiters", this, DepartmentChangeFeed::waiterCount)
+                .description("Long-poll and stream clients waiting for the next change")
+                .register(meterRegistry);
+    }
+
+    // Inside a transaction the change is only published once it commits, so followers never see a rolled back write
+    public void record(DepartmentChange.Type type, Long departmentId, Department department) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(type, departmentId, department);
+                }
+            });
+        } else {
+            append(type, departmentId, department);
+        }
+    }
+
+    private void append(DepartmentChange.Type type, Long departmentId, Department department) {
+        List<Waiter> ready;
+        synchronized (this) {
+            lastSequence++;
+            buffer[(int) (lastSequence % capacity)] = new DepartmentChange(token(lastSequence), type, departmentId, department);
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        // Completed outside the lock, the callbacks may write to a client
+        for (Waiter waiter : ready) {
+            waiter.future().complete(read(waiter.since()));
+        }
+    }
+
+    public synchronized String lastSequence() {
+        return token(lastSequence);
+    }
+
+    /**
+     * Changes after {@code since}, at most {@code department.changes.max-batch} of them. A null {@code since}
+     * starts from the current sequence.
+     */
+    public synchronized DepartmentChangeBatch read(String since) {
+        return read(Objects.isNull(since) ? lastSequence : sequenceOf(since));
+    }
+
+    private synchronized DepartmentChangeBatch read(long from) {
+        long oldest = Math.max(1, lastSequence - capacity + 1);
+        if (from < oldest - 1 || from > lastSequence) {
+            return new DepartmentChangeBatch(List.of(), token(lastSequence), true);
+        }
+        long to = Math.min(lastSequence, from + maxBatch);
+        List<DepartmentChange> changes = new ArrayList<>((int) (to - from));
+        for (long sequence = from + 1; sequence <= to; sequence++) {
+            changes.add(buffer[(int) (sequence % capacity)]);
+        }
+        return new DepartmentChangeBatch(changes, token(to), false);
+    }
+
+    /**
+     * Completes as soon as there are changes after {@code since}, or with an empty batch once {@code timeout} has
+     * passed.
+     */
+    public CompletableFuture<DepartmentChangeBatch> await(String since, Duration timeout) {
+        long from;
+        CompletableFuture<DepartmentChangeBatch> future = new CompletableFuture<>();
+        synchronized (this) {
+            from = Objects.isNull(since) ? lastSequence : sequenceOf(since);
+            if (from != lastSequence) {
+                return CompletableFuture.completedFuture(read(from));
+            }
+            Waiter waiter = new Waiter(from, future);
+            waiters.add(waiter);
+            future.whenComplete((batch, e) -> removeWaiter(waiter));
+        }
+        return future.completeOnTimeout(new DepartmentChangeBatch(List.of(), token(from), false),
+                timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    String token(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // -1 for a token of another epoch or a malformed one, which is below any buffered sequence and so asks for a resync
+    long sequenceOf(String token) {
+        int separator = token.lastIndexOf('-');
+        if (separator < 0 || !token.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private synchronized int waiterCount() {
+        return waiters.size();
+    }
+}
@@ -0,0 +1,174 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Membership filter over existing department ids, enabled with {@code department.id-filter.enabled}, so lookups of
+ * ids that certainly do not exist are answered without a query.
+ * <p>
+ * Creations and deletions made through this node update the filter; rows created by other nodes are only seen at
+ * the next rebuild ({@code rebuild-interval}), so on a multi-node deployment a brand-new id may be reported missing
+ * until then. {@code department.id-filter.rejected} counts the queries saved and
+ * {@code department.id-filter.false-positive} the ids the filter let through that did not exist.
+ * <p>
+ * A creation the filter has no room for saturates it: every id is then let through to the database until a rebuild,
+ * started right away with twice the capacity, replaces it.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(value = "department.id-filter.enabled", havingValue = "true")
+public class DepartmentIdFilter {
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${department.id-filter.capacity:1000000}")
+    private long capacity;
+
+    private volatile CuckooFilter filter;
+    // Set when the current filter failed to add an id, which it may then wrongly report missing
+    private volatile boolean saturated;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Creations that happen while a rebuild is scanning the table, replayed into the new filter
+    private List<Long> addedDuringRebuild;
+
+    private Counter rejected;
+    private Counter falsePositives;
+
+    private final Logger logger = Logger.getLogger(DepartmentIdFilter.class.getName());
+
+    @PostConstruct
+    void registerMetrics() {
+        rejected = Counter.builder("department.id-filter.rejected")
+                .description("Lookups of missing departments answered without a query")
+                .register(meterRegistry);
+        falsePositives = Counter.builder("department.id-filter.false-positive")
+                .description("Lookups the filter let through for departments that did not exist")
+                .register(meterRegistry);
+        Gauge.builder("department.id-filter.expected-fpp", this,
+                        idFilter -> Objects.isNull(idFilter.filter) ? 0 : idFilter.filter.expectedFalsePositiveRate())
+                .description("Expected false positive probability at the current load")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${department.id-filter.rebuild-interval:PT1M}",
+            initialDelayString = "${department.id-filter.rebuild-interval:PT1M}")
+    public void rebuild() {
+        // A rebuild already running will pick up the raised capacity on its next run if it ends up saturated too
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        boolean full;
+        try {
+            long rebuildCapacity;
+            synchronized (this) {
+                addedDuringRebuild = new ArrayList<>();
+                rebuildCapacity = capacity;
+            }
+
+            long count = departmentRepository.count();
+            CuckooFilter rebuilt = new CuckooFilter(Math.max(rebuildCapacity, count * 2));
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Long> departmentIds = departmentRepository.streamDepartmentIds()) {
+                    departmentIds.forEach(rebuilt::add);
+                }
+            });
+
+            synchronized (this) {
+                addedDuringRebuild.forEach(rebuilt::add);
+                addedDuringRebuild = null;
+                filter = rebuilt;
+                full = rebuilt.isFull();
+                saturated = full;
+                if (full) {
+                    capacity = Math.max(capacity, 2L * rebuilt.size());
+                }
+            }
+            logger.fine("Rebuilt the department id filter with " + rebuilt.size() + " ids");
+        } finally {
+            rebuilding.set(false);
+        }
+        if (full) {
+            scheduleRebuild();
+        }
+    }
+
+    private void scheduleRebuild() {
+        taskScheduler.schedule(this::rebuild, Instant.now());
+    }
+
+    /**
+     * @return false only when the department certainly does not exist
+     */
+    public boolean mightExist(Long departmentId) {
+        CuckooFilter current = filter;
+        if (Objects.isNull(current) || saturated || Objects.isNull(departmentId) || current.mightContain(departmentId)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    boolean isSaturated() {
+        return saturated;
+    }
+
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    // Only for ids that were just created, so each id is added exactly once
+    public synchronized void added(Long departmentId) {
+        if (Objects.nonNull(addedDuringRebuild)) {
+            addedDuringRebuild.add(departmentId);
+        }
+        if (Objects.nonNull(filter) && !filter.add(departmentId) && !saturated) {
+            saturated = true;
+            capacity = Math.max(capacity, 2L * filter.size());
+            logger.warning("Department id filter is full, rebuilding it with a capacity of " + capacity);
+            scheduleRebuild();
+        }
+    }
+
+    // Only for ids that were just deleted; removing an id that was never added could hide another one
+    public synchronized void removed(Long departmentId) {
+        if (Objects.nonNull(addedDuringRebuild)) {
+            addedDuringRebuild.remove(departmentId);
+        }
+        if (Objects.nonNull(filter)) {
+            filter.remove(departmentId);
+        }
+    }
+}
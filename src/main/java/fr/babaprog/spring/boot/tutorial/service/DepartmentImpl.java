@@ -1,67 +1,695 @@
 package fr.babaprog.spring.boot.tutorial.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentBatchResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentDeleteResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentMultiGetResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNameConflictException;
 import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.error.UnknownDepartmentFieldException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentProjectionRepository;
 import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
+@Timed("department.service")
 public class DepartmentImpl implements DepartmentService {
 
+    static final String DEPARTMENTS_CACHE = "departments";
+    static final String DEPARTMENTS_BY_NAME_CACHE = "departmentsByName";
+
+    // Ids per IN (...) list, well under the bind parameter limits of MySQL and H2
+    static final int ID_CHUNK_SIZE = 1000;
+
     @Autowired
     private DepartmentRepository departmentRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Wraps only the queries of reads that can be answered from memory, so snapshot hits and callers waiting on
+    // another caller's lookup never hold a connection
+    private TransactionTemplate readOnlyTransaction;
+
+    @Autowired
+    private DepartmentSearchIndex departmentSearchIndex;
+
+    @Autowired
+    private DepartmentChangeFeed departmentChangeFeed;
+
+    // Only present when department.snapshot.enabled is set
+    @Autowired(required = false)
+    private DepartmentSnapshot departmentSnapshot;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Only present when department.id-filter.enabled is set
+    @Autowired(required = false)
+    private DepartmentIdFilter departmentIdFilter;
+
+    // Only present when department.write-pipeline.enabled is set
+    @Autowired(required = false)
+    private DepartmentWritePipeline writePipeline;
+
+    // Concurrent cache misses for the same department share one query
+    private SingleFlight<Long, Department> byIdLookups;
+    private SingleFlight<String, Department> byNameLookups;
+
+    // Key in the name cache of each department looked up by name, so evicting it needs no scan of that cache; at
+    // most one entry per department, since a department is only ever cached under its own normalized name. Bounded
+    // by the cache spec, and a mapping it drops takes its name entry along, so a cached name is never left unmapped
+    private Map<Long, String> cachedNames;
+
+    @Value("${spring.cache.caffeine.spec:maximumSize=10000,expireAfterWrite=10m}")
+    private String cacheSpec;
+
+    @Value("${department.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Value("${department.name.unique:false}")
+    private boolean uniqueNames;
+
+    @Value("${department.snapshot.deletion-retention:P1D}")
+    private Duration deletionRetention;
+
+    @PostConstruct
+    void createLookups() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        byIdLookups = new SingleFlight<>(coalescedCounter("fetchDepartmentById"));
+        byNameLookups = new SingleFlight<>(coalescedCounter("fetchDepartmentByName"));
+        cachedNames = Caffeine.from(cacheSpec)
+                .executor(Runnable::run)
+                .<Long, String>evictionListener((departmentId, name, cause) -> evictName(name))
+                .build()
+                .asMap();
+        if (Objects.nonNull(writePipeline)) {
+            writePipeline.start(this::persistGroup);
+        }
+    }
+
+    private Counter coalescedCounter(String method) {
+        return Counter.builder("department.lookup.coalesced")
+                .description("Lookups answered by a query another caller already had in flight")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+
     @Override
     public Department saveDepartment(Department department) {
-        return departmentRepository.save(department);
+        Long requestedId = department.getDepartmentId();
+        // Only creations are grouped, and the writer thread publishes them; a department with an id is merged as before
+        if (Objects.nonNull(writePipeline) && Objects.isNull(department.getDepartmentId())) {
+            return writePipeline.submit(department);
+        }
+        checkNameAvailable(department.getDepartmentName(), department.getDepartmentId());
+        Department savedDepartment;
+        try {
+            savedDepartment = transactionTemplate.execute(status -> mergeDepartment(department));
+        } catch (DataIntegrityViolationException e) {
+            throw nameConflictOr(e);
+        }
+        evictDepartment(savedDepartment.getDepartmentId());
+        publishDepartment(savedDepartment);
+        // Merging an unknown id inserts a row under a newly generated id
+        boolean created = !savedDepartment.getDepartmentId().equals(requestedId);
+        if (created) {
+            departmentCreated(savedDepartment.getDepartmentId());
+        }
+        recordChange(created ? DepartmentChange.Type.CREATED : DepartmentChange.Type.UPDATED, savedDepartment);
+        return savedDepartment;
+    }
+
+    // With a nullable @Version, the repository would persist a department that carries an id but no version and fail
+    // on the id; an existing row takes the request's fields instead, and an unknown id gets a newly generated one
+    private Department mergeDepartment(Department department) {
+        Long tableVersion = nextTableVersion();
+        Optional<Department> existing = Objects.isNull(department.getDepartmentId())
+                ? Optional.empty() : departmentRepository.findById(department.getDepartmentId());
+        if (existing.isEmpty()) {
+            department.setDepartmentId(null);
+            department.setVersion(null);
+            department.setTableVersion(tableVersion);
+            return departmentRepository.saveAndFlush(department);
+        }
+        Department current = existing.get();
+        if (Objects.nonNull(department.getVersion()) && !department.getVersion().equals(current.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Department.class, current.getDepartmentId());
+        }
+        current.setDepartmentName(department.getDepartmentName());
+        current.setDepartmentCode(department.getDepartmentCode());
+        current.setDepartmentAddress(department.getDepartmentAddress());
+        current.setTableVersion(tableVersion);
+        return departmentRepository.saveAndFlush(current);
+    }
+
+    @Override
+    public DepartmentBatchResult saveDepartments(List<Department> departments) {
+        List<Department> saved = new ArrayList<>();
+        Map<Integer, String> errors = new TreeMap<>();
+        List<Integer> chunk = new ArrayList<>(batchSize);
+
+        for (int i = 0; i < departments.size(); i++) {
+            Set<ConstraintViolation<Department>> violations = validator.validate(departments.get(i));
+            if (!violations.isEmpty()) {
+                errors.put(i, violations.stream().map(ConstraintViolation::getMessage).distinct().collect(Collectors.joining(", ")));
+                continue;
+            }
+            try {
+                checkNameAvailable(departments.get(i).getDepartmentName(), null);
+            } catch (DepartmentNameConflictException e) {
+                errors.put(i, e.getMessage());
+                continue;
+            }
+            chunk.add(i);
+            if (chunk.size() == batchSize) {
+                persistChunk(departments, chunk, saved, (index, e) -> errors.put(index, errorMessage(e)));
+                chunk.clear();
+            }
+        }
+        persistChunk(departments, chunk, saved, (index, e) -> errors.put(index, errorMessage(e)));
+        publishCreated(saved);
+
+        return new DepartmentBatchResult(saved, errors);
+    }
+
+    // Called by the write pipeline's thread with one group of creations. The group is published here rather than by
+    // the callers, which may have timed out while it committed
+    private Map<Integer, RuntimeException> persistGroup(List<Department> departments) {
+        Map<Integer, RuntimeException> failures = new HashMap<>();
+        Set<String> groupNames = new HashSet<>();
+        List<Integer> chunk = new ArrayList<>(departments.size());
+
+        for (int i = 0; i < departments.size(); i++) {
+            String departmentName = departments.get(i).getDepartmentName();
+            try {
+                checkNameAvailable(departmentName, null);
+                // The database check cannot see the other rows of the same group
+                if (uniqueNames && !groupNames.add(Department.normalizeName(departmentName))) {
+                    throw new DepartmentNameConflictException("Department Name Already Used");
+                }
+            } catch (DepartmentNameConflictException e) {
+                failures.put(i, e);
+                continue;
+            }
+            chunk.add(i);
+        }
+        List<Department> saved = new ArrayList<>();
+        persistChunk(departments, chunk, saved, failures::put);
+        publishCreated(saved);
+
+        return failures;
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        return NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    }
+
+    // One transaction and one JDBC batch per chunk; a failing chunk is replayed row by row so only the faulty rows are rejected
+    private void persistChunk(List<Department> departments, List<Integer> chunk, List<Department> saved,
+                              BiConsumer<Integer, RuntimeException> onError) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Long tableVersion = nextTableVersion();
+                for (Integer index : chunk) {
+                    Department department = departments.get(index);
+                    department.setDepartmentId(null);
+                    department.setVersion(null);
+                    department.setTableVersion(tableVersion);
+                    entityManager.persist(department);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+            chunk.forEach(index -> saved.add(departments.get(index)));
+        } catch (PersistenceException | DataAccessException e) {
+            if (chunk.size() == 1) {
+                onError.accept(chunk.get(0), nameConflictOr(e));
+                return;
+            }
+            for (Integer index : chunk) {
+                persistChunk(departments, List.of(index), saved, onError);
+            }
+        }
     }
 
+    // Never served from the snapshot: the list bytes are cached under the table version, which the snapshot may lag.
+    // Both are read in one transaction, so they come from the same replica, and the version first, so it is never
+    // newer than the rows
     @Override
-    public List<Department> fetchDepartmentList() {
-        return departmentRepository.findAll();
+    public DepartmentList fetchDepartmentList() {
+        return readOnly(() -> new DepartmentList(Objects.toString(departmentRepository.findTableVersion(), null),
+                departmentRepository.findAll()));
+    }
+
+    @Override
+    public List<Map<String, Object>> fetchDepartmentList(List<String> fields) {
+        List<String> columns = checkFields(fields);
+        if (snapshotLoaded()) {
+            return departmentSnapshot.list().stream().map(department -> project(department, columns)).toList();
+        }
+        return readOnly(() -> departmentRepository.findAllProjected(columns));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String fetchDepartmentListVersion() {
+        return Objects.toString(departmentRepository.findTableVersion(), null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DepartmentPage fetchDepartmentPage(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        long cursor = Objects.nonNull(after) ? after : 0L;
+
+        // Fetch one extra row to know whether a next page exists without a count query
+        List<Department> departments = departmentRepository.findByDepartmentIdGreaterThanOrderByDepartmentIdAsc(
+                cursor, PageRequest.of(0, pageSize + 1));
+
+        if (departments.size() <= pageSize) {
+            return new DepartmentPage(departments, null);
+        }
+
+        List<Department> page = departments.subList(0, pageSize);
+        return new DepartmentPage(page, page.get(pageSize - 1).getDepartmentId());
+    }
+
+    @Override
+    public DepartmentSearchResult searchDepartments(String query, int page, int size) {
+        return departmentSearchIndex.search(query, Math.max(0, page), Math.max(1, Math.min(size, maxPageSize)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportDepartments(Consumer<Department> consumer) {
+        try (Stream<Department> departments = departmentRepository.streamAllDepartments()) {
+            departments.forEach(department -> {
+                consumer.accept(department);
+                // Keep the persistence context empty so memory stays flat whatever the table size
+                entityManager.detach(department);
+            });
+        }
     }
 
     @Override
+    @Cacheable(DEPARTMENTS_CACHE)
     public Department fetchDepartmentById(Long departmentId) throws DepartmentNotFoundException {
-        Optional<Department> department = departmentRepository.findById(departmentId);
-        if(department.isEmpty()) {
-            throw new DepartmentNotFoundException("Department Not Available");
+        checkMightExist(departmentId);
+        // A miss may be a row another node inserted since the last refresh, so it still goes to the database
+        if (snapshotLoaded()) {
+            Department department = departmentSnapshot.get(departmentId);
+            if (Objects.nonNull(department)) {
+                return department;
+            }
+        }
+        return byIdLookups.execute(departmentId, () -> {
+            Optional<Department> department = readOnly(() -> departmentRepository.findById(departmentId));
+            if(department.isEmpty()) {
+                if (Objects.nonNull(departmentIdFilter)) {
+                    departmentIdFilter.recordFalsePositive();
+                }
+                throw new DepartmentNotFoundException("Department Not Available");
+            }
+            return department.get();
+        });
+    }
+
+    @Override
+    public Map<String, Object> fetchDepartmentById(Long departmentId, List<String> fields) throws DepartmentNotFoundException {
+        List<String> columns = checkFields(fields);
+        checkMightExist(departmentId);
+        if (snapshotLoaded()) {
+            Department department = departmentSnapshot.get(departmentId);
+            if (Objects.nonNull(department)) {
+                return project(department, columns);
+            }
+        }
+        return readOnly(() -> departmentRepository.findProjectedById(departmentId, columns))
+                .orElseThrow(() -> new DepartmentNotFoundException("Department Not Available"));
+    }
+
+    @Override
+    public DepartmentMultiGetResult fetchDepartmentsByIds(List<Long> departmentIds) {
+        List<Long> ids = departmentIds.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, Department> found = new HashMap<>();
+
+        List<Long> remaining = new ArrayList<>();
+        for (Long departmentId : ids) {
+            if (Objects.nonNull(departmentIdFilter) && !departmentIdFilter.mightExist(departmentId)) {
+                continue;
+            }
+            Department department = snapshotLoaded() ? departmentSnapshot.get(departmentId) : null;
+            if (Objects.nonNull(department)) {
+                found.put(departmentId, department);
+            } else {
+                remaining.add(departmentId);
+            }
         }
-        return department.get();
+        if (!remaining.isEmpty()) {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                for (List<Long> chunk : chunks(remaining)) {
+                    departmentRepository.findByDepartmentIdIn(chunk)
+                            .forEach(department -> found.put(department.getDepartmentId(), department));
+                }
+            });
+        }
+
+        List<Department> departments = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long departmentId : ids) {
+            Department department = found.get(departmentId);
+            if (Objects.nonNull(department)) {
+                departments.add(department);
+            } else {
+                missingIds.add(departmentId);
+            }
+        }
+        return new DepartmentMultiGetResult(departments, missingIds);
     }
 
     @Override
+    @Transactional
     public void deleteDepartmentById(Long departmentId) {
-        departmentRepository.deleteById(departmentId);
+        deleteDepartments(List.of(departmentId));
     }
 
     @Override
-    public Department updateDepartment(Long departmentId, Department department) {
-        Department departmentDB = departmentRepository.findById(departmentId).get();
+    @Transactional
+    public DepartmentDeleteResult deleteDepartmentsByIds(List<Long> departmentIds) {
+        List<Long> ids = departmentIds.stream().filter(Objects::nonNull).distinct().toList();
+        return new DepartmentDeleteResult(ids.size(), deleteDepartments(ids));
+    }
 
-        if (Objects.nonNull(department.getDepartmentName()) && !"".equalsIgnoreCase(department.getDepartmentName())) {
-            departmentDB.setDepartmentName(department.getDepartmentName());
+    private int deleteDepartments(List<Long> departmentIds) {
+        if (departmentIds.isEmpty()) {
+            return 0;
         }
+        // Taken before the deletes, since their tombstones carry it, so a delete of unknown ids moves it too
+        Long tableVersion = nextTableVersion();
+        Instant now = Instant.now();
+        departmentRepository.pruneDeletions(now.minus(deletionRetention));
 
-        if (Objects.nonNull(department.getDepartmentCode()) && !"".equalsIgnoreCase(department.getDepartmentCode())) {
-            departmentDB.setDepartmentCode(department.getDepartmentCode());
+        int deleted = 0;
+        for (List<Long> chunk : chunks(departmentIds)) {
+            departmentRepository.recordDeletions(chunk, tableVersion, now);
+            int chunkDeleted = departmentRepository.deleteByDepartmentIdIn(chunk);
+            // Ids are only dropped from the filter when all of them existed, since dropping an unknown id is unsafe,
+            // and only once the delete commits: a rolled back delete would leave existing ids reported missing
+            if (Objects.nonNull(departmentIdFilter) && chunkDeleted == chunk.size()) {
+                afterCommit(() -> chunk.forEach(departmentIdFilter::removed));
+            }
+            deleted += chunkDeleted;
         }
 
-        if (Objects.nonNull(department.getDepartmentAddress()) && !"".equalsIgnoreCase(department.getDepartmentAddress())) {
-            departmentDB.setDepartmentAddress(department.getDepartmentAddress());
+        // A rolled back delete must leave the cached and in-memory copies of the rows in place
+        afterCommit(() -> {
+            evictDepartments(departmentIds);
+            for (Long departmentId : departmentIds) {
+                departmentSearchIndex.remove(departmentId);
+                if (Objects.nonNull(departmentSnapshot)) {
+                    departmentSnapshot.remove(departmentId);
+                }
+            }
+        });
+        for (Long departmentId : departmentIds) {
+            // The delete count does not say which ids existed, so every requested id is announced
+            departmentChangeFeed.record(DepartmentChange.Type.DELETED, departmentId, null);
         }
+        return deleted;
+    }
 
-        return departmentRepository.save(departmentDB);
+    // Taken first by every write, which stamps its rows with it; the counter row stays locked until the write ends
+    private Long nextTableVersion() {
+        departmentRepository.incrementTableVersion();
+        return departmentRepository.findTableVersion();
+    }
+
+    private static List<List<Long>> chunks(List<Long> departmentIds) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < departmentIds.size(); from += ID_CHUNK_SIZE) {
+            chunks.add(departmentIds.subList(from, Math.min(from + ID_CHUNK_SIZE, departmentIds.size())));
+        }
+        return chunks;
     }
 
     @Override
+    @Transactional
+    public Department updateDepartment(Long departmentId, Department department) throws DepartmentNotFoundException {
+        String departmentName = blankToNull(department.getDepartmentName());
+        if (Objects.nonNull(departmentName)) {
+            checkNameAvailable(departmentName, departmentId);
+        }
+
+        int updated;
+        try {
+            updated = departmentRepository.updateDepartment(departmentId, department.getVersion(), nextTableVersion(),
+                    departmentName, Department.normalizeName(departmentName),
+                    blankToNull(department.getDepartmentCode()), blankToNull(department.getDepartmentAddress()));
+        } catch (DataIntegrityViolationException e) {
+            throw nameConflictOr(e);
+        }
+
+        if (updated == 0) {
+            if (!departmentRepository.existsById(departmentId)) {
+                throw new DepartmentNotFoundException("Department Not Available");
+            }
+            throw new ObjectOptimisticLockingFailureException(Department.class, departmentId);
+        }
+
+        Department updatedDepartment = departmentRepository.findById(departmentId)
+                .orElseThrow(() -> new DepartmentNotFoundException("Department Not Available"));
+        // Evicting before the commit would let a concurrent lookup cache the old row again
+        afterCommit(() -> {
+            evictDepartment(departmentId);
+            publishDepartment(updatedDepartment);
+        });
+        recordChange(DepartmentChange.Type.UPDATED, updatedDepartment);
+        return updatedDepartment;
+    }
+
+    @Override
+    @Cacheable(value = DEPARTMENTS_BY_NAME_CACHE, key = "T(fr.babaprog.spring.boot.tutorial.entity.Department).normalizeName(#departmentName)", unless = "#result == null")
     public Department fetchDepartmentByName(String departmentName) {
-        return departmentRepository.findByDepartmentNameIgnoreCase(departmentName);
+        String normalizedName = Department.normalizeName(departmentName);
+        Department department = byNameLookups.execute(normalizedName,
+                () -> readOnly(() -> departmentRepository.findFirstByNormalizedNameOrderByDepartmentIdAsc(normalizedName)));
+        if (Objects.nonNull(department)) {
+            cachedNames.put(department.getDepartmentId(), normalizedName);
+        }
+        return department;
+    }
+
+    @Override
+    public CompletableFuture<DepartmentChangeBatch> fetchDepartmentChanges(String since, Duration timeout) {
+        return departmentChangeFeed.await(since, timeout);
+    }
+
+    // Blank entries are dropped and an empty selection means every field
+    private static List<String> checkFields(List<String> fields) {
+        List<String> columns = Objects.isNull(fields) ? List.of() : fields.stream()
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .distinct()
+                .toList();
+        for (String field : columns) {
+            if (!DepartmentProjectionRepository.FIELDS.contains(field)) {
+                throw new UnknownDepartmentFieldException("Unknown Department Field: " + field);
+            }
+        }
+        return columns.isEmpty() ? DepartmentProjectionRepository.FIELDS : columns;
+    }
+
+    private static Map<String, Object> project(Department department, List<String> fields) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String field : fields) {
+            row.put(field, switch (field) {
+                case "departmentId" -> department.getDepartmentId();
+                case "departmentName" -> department.getDepartmentName();
+                case "departmentAddress" -> department.getDepartmentAddress();
+                case "departmentCode" -> department.getDepartmentCode();
+                case "version" -> department.getVersion();
+                default -> throw new UnknownDepartmentFieldException("Unknown Department Field: " + field);
+            });
+        }
+        return row;
+    }
+
+    private void checkMightExist(Long departmentId) throws DepartmentNotFoundException {
+        if (Objects.nonNull(departmentIdFilter) && !departmentIdFilter.mightExist(departmentId)) {
+            throw new DepartmentNotFoundException("Department Not Available");
+        }
+    }
+
+    private void departmentCreated(Long departmentId) {
+        if (Objects.nonNull(departmentIdFilter)) {
+            departmentIdFilter.added(departmentId);
+        }
+    }
+
+    // Outside a transaction the action runs right away
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private <T> T readOnly(Supplier<T> query) {
+        return readOnlyTransaction.execute(status -> query.get());
+    }
+
+    private boolean snapshotLoaded() {
+        return Objects.nonNull(departmentSnapshot) && departmentSnapshot.isLoaded();
+    }
+
+    // Keeps the in-memory views of the table in step with a write that just reached the database
+    private void publishDepartment(Department department) {
+        departmentSearchIndex.index(department);
+        if (Objects.nonNull(departmentSnapshot)) {
+            departmentSnapshot.put(department);
+        }
+    }
+
+    private void publishCreated(List<Department> departments) {
+        departments.forEach(this::publishDepartment);
+        departments.forEach(department -> departmentCreated(department.getDepartmentId()));
+        departments.forEach(department -> recordChange(DepartmentChange.Type.CREATED, department));
+    }
+
+    private void recordChange(DepartmentChange.Type type, Department department) {
+        departmentChangeFeed.record(type, department.getDepartmentId(), department);
+    }
+
+    private static String blankToNull(String value) {
+        return Objects.isNull(value) || value.isBlank() ? null : value;
+    }
+
+    private void checkNameAvailable(String departmentName, Long departmentId) {
+        if (!uniqueNames || Objects.isNull(departmentName)) {
+            return;
+        }
+        // -1 never matches a generated id, so new departments are checked against every row
+        Long excludedId = Objects.nonNull(departmentId) ? departmentId : -1L;
+        if (departmentRepository.existsByNormalizedNameAndDepartmentIdNot(Department.normalizeName(departmentName), excludedId)) {
+            throw new DepartmentNameConflictException("Department Name Already Used");
+        }
+    }
+
+    // checkNameAvailable cannot see a concurrent write of the same name; the unique index then rejects one of them
+    private RuntimeException nameConflictOr(RuntimeException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        if (uniqueNames && Objects.nonNull(message)
+                && message.toLowerCase(Locale.ROOT).contains(DepartmentNameIndexMigration.INDEX_NAME)) {
+            return new DepartmentNameConflictException("Department Name Already Used");
+        }
+        return e;
+    }
+
+    private void evictDepartment(Long departmentId) {
+        if (Objects.nonNull(departmentId)) {
+            evictDepartments(List.of(departmentId));
+        }
+    }
+
+    // Drops the id entries and every name entry pointing at these departments, so a rename never serves the old name
+    private void evictDepartments(Collection<Long> departmentIds) {
+        Cache byId = cacheManager.getCache(DEPARTMENTS_CACHE);
+        if (Objects.nonNull(byId)) {
+            departmentIds.forEach(byId::evict);
+        }
+
+        for (Long departmentId : departmentIds) {
+            String cachedName = cachedNames.remove(departmentId);
+            if (Objects.nonNull(cachedName)) {
+                evictName(cachedName);
+            }
+        }
+    }
+
+    private void evictName(String normalizedName) {
+        Cache byName = cacheManager.getCache(DEPARTMENTS_BY_NAME_CACHE);
+        if (Objects.nonNull(byName) && Objects.nonNull(normalizedName)) {
+            byName.evict(normalizedName);
+        }
     }
 
 }
@@ -0,0 +1,81 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Repeatable Flyway migration that keeps a unique index on normalized_name exactly when department.name.unique is
+ * set. Its checksum follows the option, so Flyway runs it again whenever the option is switched, creating or dropping
+ * the index. Enabling the option fails the migration while the table still holds duplicate names.
+ */
+@Component
+@Profile("!reactive")
+public class DepartmentNameIndexMigration implements JavaMigration {
+
+    static final String INDEX_NAME = "uk_department_normalized_name";
+
+    @Value("${department.name.unique:false}")
+    private boolean uniqueNames;
+
+    private final Logger logger = Logger.getLogger(DepartmentNameIndexMigration.class.getName());
+
+    @Override
+    public MigrationVersion getVersion() {
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+        return "department name uniqueness";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return uniqueNames ? 1 : 0;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        boolean exists = indexExists(connection);
+        try (Statement statement = connection.createStatement()) {
+            if (uniqueNames && !exists) {
+                statement.execute("create unique index " + INDEX_NAME + " on department (normalized_name)");
+                logger.info("Created unique index " + INDEX_NAME);
+            } else if (!uniqueNames && exists) {
+                boolean mysql = connection.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL");
+                statement.execute("drop index " + INDEX_NAME + (mysql ? " on department" : ""));
+                logger.info("Dropped unique index " + INDEX_NAME);
+            }
+        }
+    }
+
+    private static boolean indexExists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String table = metaData.storesUpperCaseIdentifiers() ? "DEPARTMENT" : "department";
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, true, false)) {
+            while (indexes.next()) {
+                if (INDEX_NAME.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
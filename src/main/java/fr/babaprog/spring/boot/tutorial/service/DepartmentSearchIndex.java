@@ -0,0 +1,242 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over department name, code and address. Built once the application is ready and kept up
+ * to date by {@link DepartmentImpl} on every write, so searches never scan the table.
+ * <p>
+ * A query term matches a token exactly, as a prefix, or within one or two typos (found through shared trigrams);
+ * matches on the name weigh more than on the code, and on the code more than on the address.
+ */
+@Component
+@Profile("!reactive")
+public class DepartmentSearchIndex {
+
+    private static final int EXACT_SCORE = 4;
+    private static final int PREFIX_SCORE = 2;
+    private static final int FUZZY_SCORE = 1;
+
+    private enum Field {
+        NAME(3), CODE(2), ADDRESS(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<Long, Department> documents = new ConcurrentHashMap<>();
+    // token -> department id -> best field weight of the token in that department
+    private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+    private final Logger logger = Logger.getLogger(DepartmentSearchIndex.class.getName());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Department> departments = departmentRepository.streamAllDepartments()) {
+                departments.forEach(department -> {
+                    index(department);
+                    // The index keeps its own copy, so the entity can leave the persistence context right away
+                    entityManager.detach(department);
+                });
+            }
+        });
+        logger.info("Indexed " + documents.size() + " departments for search");
+    }
+
+    public synchronized void index(Department department) {
+        if (Objects.isNull(department) || Objects.isNull(department.getDepartmentId())) {
+            return;
+        }
+        remove(department.getDepartmentId());
+
+        Department document = Department.builder()
+                .departmentId(department.getDepartmentId())
+                .departmentName(department.getDepartmentName())
+                .departmentCode(department.getDepartmentCode())
+                .departmentAddress(department.getDepartmentAddress())
+                .version(department.getVersion())
+                .build();
+        documents.put(document.getDepartmentId(), document);
+
+        for (Map.Entry<String, Integer> token : tokens(document).entrySet()) {
+            postings.computeIfAbsent(token.getKey(), key -> {
+                trigramsOf(key).forEach(trigram -> trigrams.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(key));
+                return new ConcurrentHashMap<>();
+            }).put(document.getDepartmentId(), token.getValue());
+        }
+    }
+
+    public synchronized void remove(Long departmentId) {
+        Department document = documents.remove(departmentId);
+        if (Objects.isNull(document)) {
+            return;
+        }
+        for (String token : tokens(document).keySet()) {
+            Map<Long, Integer> departments = postings.get(token);
+            if (Objects.isNull(departments)) {
+                continue;
+            }
+            departments.remove(departmentId);
+            if (departments.isEmpty()) {
+                postings.remove(token);
+                trigramsOf(token).forEach(trigram -> {
+                    Set<String> tokens = trigrams.get(trigram);
+                    if (Objects.nonNull(tokens) && tokens.remove(token) && tokens.isEmpty()) {
+                        trigrams.remove(trigram);
+                    }
+                });
+            }
+        }
+    }
+
+    public DepartmentSearchResult search(String query, int page, int size) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (String term : split(query)) {
+            Map<Long, Integer> termScores = new HashMap<>();
+            matchTerm(term, termScores);
+            termScores.forEach((departmentId, score) -> scores.merge(departmentId, score, Integer::sum));
+        }
+
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+
+        List<Department> departments = ranked.stream()
+                .skip((long) page * size)
+                .limit(size)
+                .map(entry -> documents.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .toList();
+        return new DepartmentSearchResult(departments, ranked.size());
+    }
+
+    // Keeps the best way each department matches the term: exact, then prefix, then fuzzy
+    private void matchTerm(String term, Map<Long, Integer> termScores) {
+        addMatches(postings.get(term), EXACT_SCORE, termScores);
+
+        for (Map<Long, Integer> departments : postings.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+            addMatches(departments, PREFIX_SCORE, termScores);
+        }
+
+        int maxEdits = term.length() >= 8 ? 2 : term.length() >= 4 ? 1 : 0;
+        if (maxEdits == 0) {
+            return;
+        }
+        Set<String> candidates = new HashSet<>();
+        for (String trigram : trigramsOf(term)) {
+            candidates.addAll(trigrams.getOrDefault(trigram, Set.of()));
+        }
+        for (String candidate : candidates) {
+            if (!candidate.equals(term) && Math.abs(candidate.length() - term.length()) <= maxEdits
+                    && editDistance(term, candidate, maxEdits) <= maxEdits) {
+                addMatches(postings.get(candidate), FUZZY_SCORE, termScores);
+            }
+        }
+    }
+
+    private static void addMatches(Map<Long, Integer> departments, int matchScore, Map<Long, Integer> termScores) {
+        if (Objects.isNull(departments)) {
+            return;
+        }
+        departments.forEach((departmentId, fieldWeight) -> termScores.merge(departmentId, matchScore * fieldWeight, Math::max));
+    }
+
+    private static Map<String, Integer> tokens(Department department) {
+        Map<String, Integer> tokens = new HashMap<>();
+        addTokens(tokens, department.getDepartmentName(), Field.NAME);
+        addTokens(tokens, department.getDepartmentCode(), Field.CODE);
+        addTokens(tokens, department.getDepartmentAddress(), Field.ADDRESS);
+        return tokens;
+    }
+
+    private static void addTokens(Map<String, Integer> tokens, String value, Field field) {
+        for (String token : split(value)) {
+            tokens.merge(token, field.weight, Math::max);
+        }
+    }
+
+    private static List<String> split(String value) {
+        if (Objects.isNull(value)) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : value.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static Set<String> trigramsOf(String token) {
+        String padded = "$" + token + "$";
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    // Levenshtein distance, giving up as soon as it exceeds maxEdits
+    private static int editDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
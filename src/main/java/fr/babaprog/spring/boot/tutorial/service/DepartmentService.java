@@ -1,20 +1,51 @@
 package fr.babaprog.spring.boot.tutorial.service;
 
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentBatchResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentDeleteResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentMultiGetResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
 import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface DepartmentService {
     Department saveDepartment(Department department);
 
-    List<Department> fetchDepartmentList();
+    DepartmentBatchResult saveDepartments(List<Department> departments);
+
+    DepartmentList fetchDepartmentList();
+
+    List<Map<String, Object>> fetchDepartmentList(List<String> fields);
+
+    String fetchDepartmentListVersion();
+
+    DepartmentPage fetchDepartmentPage(Long after, int limit);
+
+    DepartmentSearchResult searchDepartments(String query, int page, int size);
+
+    void exportDepartments(Consumer<Department> consumer);
 
     Department fetchDepartmentById(Long departmentId) throws DepartmentNotFoundException;
 
+    Map<String, Object> fetchDepartmentById(Long departmentId, List<String> fields) throws DepartmentNotFoundException;
+
+    DepartmentMultiGetResult fetchDepartmentsByIds(List<Long> departmentIds);
+
     void deleteDepartmentById(Long departmentId);
 
-    Department updateDepartment(Long departmentId, Department department);
+    DepartmentDeleteResult deleteDepartmentsByIds(List<Long> departmentIds);
+
+    Department updateDepartment(Long departmentId, Department department) throws DepartmentNotFoundException;
 
     Department fetchDepartmentByName(String departmentName);
+
+    CompletableFuture<DepartmentChangeBatch> fetchDepartmentChanges(String since, Duration timeout);
 }
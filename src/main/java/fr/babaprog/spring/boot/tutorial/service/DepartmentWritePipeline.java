@@ -0,0 +1,185 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentWriteRejectedException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for department creation, enabled with {@code department.write-pipeline.enabled}.
+ * <p>
+ * Callers of {@link #submit(Department)} are queued and a single writer thread persists them in groups of up to
+ * {@code batch-size}, waiting at most {@code max-wait} for a group to fill, so a burst of creations costs one
+ * transaction and one JDBC batch per group instead of one per request. Each caller is released once its own group
+ * has committed, or with its own exception when only its row was rejected. When the bounded queue stays full for
+ * {@code offer-timeout}, the caller is rejected instead of piling up. A caller whose group has not committed within
+ * {@code result-timeout} is rejected too, although its department may still be created afterwards; the handler, not
+ * the caller, publishes what a group created.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(value = "department.write-pipeline.enabled", havingValue = "true")
+public class DepartmentWritePipeline {
+
+    private record PendingWrite(Department department, CompletableFuture<Department> result) {
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${department.write-pipeline.batch-size:${spring.jpa.properties.hibernate.jdbc.batch_size:50}}")
+    private int batchSize;
+
+    @Value("${department.write-pipeline.max-wait:PT0.005S}")
+    private Duration maxWait;
+
+    @Value("${department.write-pipeline.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${department.write-pipeline.offer-timeout:PT1S}")
+    private Duration offerTimeout;
+
+    @Value("${department.write-pipeline.result-timeout:PT10S}")
+    private Duration resultTimeout;
+
+    private BlockingQueue<PendingWrite> queue;
+    private DistributionSummary groupSizes;
+    private volatile Thread writer;
+    private volatile boolean stopped;
+
+    private final Logger logger = Logger.getLogger(DepartmentWritePipeline.class.getName());
+
+    /**
+     * Starts the writer thread. The handler persists one group and returns the exception of each rejected
+     * department, keyed by its index in the group; the other departments are considered committed.
+     */
+    public synchronized void start(Function<List<Department>, Map<Integer, RuntimeException>> handler) {
+        if (Objects.nonNull(writer)) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("department.write.queue", queue, BlockingQueue::size)
+                .description("Department creations waiting for their group commit")
+                .register(meterRegistry);
+        groupSizes = DistributionSummary.builder("department.write.group.size")
+                .description("Departments persisted per group commit")
+                .register(meterRegistry);
+
+        writer = new Thread(() -> run(handler), "department-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Department submit(Department department) {
+        checkRunning();
+        PendingWrite write = new PendingWrite(department, new CompletableFuture<>());
+        try {
+            if (!queue.offer(write, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DepartmentWriteRejectedException("Department Write Queue Full");
+            }
+            // stop() may have drained the queue between the check and the offer
+            if (stopped && queue.remove(write)) {
+                throw new DepartmentWriteRejectedException("Department Write Pipeline Stopped");
+            }
+            return write.result().get(resultTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DepartmentWriteRejectedException("Department Write Interrupted");
+        } catch (TimeoutException e) {
+            throw new DepartmentWriteRejectedException("Department Write Timed Out");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            // An Error of the group commit, already logged by the writer thread
+            throw new DepartmentWriteRejectedException("Department Write Failed");
+        }
+    }
+
+    private void checkRunning() {
+        Thread current = writer;
+        if (stopped || Objects.isNull(current) || !current.isAlive()) {
+            throw new DepartmentWriteRejectedException("Department Write Pipeline Stopped");
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (Objects.isNull(writer)) {
+            return;
+        }
+        stopped = true;
+        writer.interrupt();
+        List<PendingWrite> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(write -> write.result().completeExceptionally(
+                new DepartmentWriteRejectedException("Department Write Pipeline Stopped")));
+    }
+
+    private void run(Function<List<Department>, Map<Integer, RuntimeException>> handler) {
+        List<PendingWrite> group = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                group.add(queue.take());
+                // Fill the group until it is full or the oldest write has waited max-wait
+                long deadline = System.nanoTime() + maxWait.toNanos();
+                while (group.size() < batchSize) {
+                    PendingWrite write = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (Objects.isNull(write)) {
+                        break;
+                    }
+                    group.add(write);
+                    queue.drainTo(group, batchSize - group.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!group.isEmpty()) {
+                commit(group, handler);
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> group, Function<List<Department>, Map<Integer, RuntimeException>> handler) {
+        groupSizes.record(group.size());
+        try {
+            Map<Integer, RuntimeException> failures = handler.apply(group.stream().map(PendingWrite::department).toList());
+            for (int i = 0; i < group.size(); i++) {
+                PendingWrite write = group.get(i);
+                RuntimeException failure = failures.get(i);
+                if (Objects.isNull(failure)) {
+                    write.result().complete(write.department());
+                } else {
+                    write.result().completeExceptionally(failure);
+                }
+            }
+        } catch (Throwable t) {
+            // Whatever the handler throws, the writer thread has to survive to serve the next groups
+            logger.log(Level.WARNING, "Group commit of " + group.size() + " departments failed", t);
+            group.forEach(write -> write.result().completeExceptionally(t));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.repository.ReactiveDepartmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Profile("reactive")
+public class ReactiveDepartmentImpl implements ReactiveDepartmentService {
+
+    // Must match the allocationSize of the department_seq generator on Department
+    private static final long ID_ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private ReactiveDepartmentRepository reactiveDepartmentRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Value("${department.snapshot.deletion-retention:P1D}")
+    private Duration deletionRetention;
+
+    private final AtomicReference<IdBlock> idBlock = new AtomicReference<>(new IdBlock(1, 0));
+
+    @Override
+    public Mono<Department> saveDepartment(Department department) {
+        department.setNormalizedName(Department.normalizeName(department.getDepartmentName()));
+        department.setVersion(0L);
+        return nextId().flatMap(departmentId -> {
+            department.setDepartmentId(departmentId);
+            return nextTableVersion()
+                    .flatMap(tableVersion -> {
+                        department.setTableVersion(tableVersion);
+                        return r2dbcEntityTemplate.insert(department);
+                    })
+                    .as(transactionalOperator::transactional);
+        });
+    }
+
+    @Override
+    public Flux<Department> fetchDepartmentList() {
+        return reactiveDepartmentRepository.findAll();
+    }
+
+    @Override
+    public Mono<Department> fetchDepartmentById(Long departmentId) {
+        return reactiveDepartmentRepository.findById(departmentId)
+                .switchIfEmpty(Mono.error(() -> new DepartmentNotFoundException("Department Not Available")));
+    }
+
+    @Override
+    public Mono<Void> deleteDepartmentById(Long departmentId) {
+        Instant now = Instant.now();
+        return nextTableVersion()
+                .flatMap(tableVersion -> reactiveDepartmentRepository.recordDeletion(departmentId, tableVersion, now))
+                .then(reactiveDepartmentRepository.pruneDeletions(now.minus(deletionRetention)))
+                .then(reactiveDepartmentRepository.deleteById(departmentId))
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Department> updateDepartment(Long departmentId, Department department) {
+        String departmentName = blankToNull(department.getDepartmentName());
+
+        return nextTableVersion()
+                .flatMap(tableVersion -> reactiveDepartmentRepository.updateDepartment(departmentId, department.getVersion(),
+                        tableVersion, departmentName, Department.normalizeName(departmentName),
+                        blankToNull(department.getDepartmentCode()), blankToNull(department.getDepartmentAddress())))
+                .flatMap(updated -> updated > 0
+                        ? fetchDepartmentById(departmentId)
+                        : reactiveDepartmentRepository.existsById(departmentId).flatMap(exists -> Mono.error(exists
+                                ? new ObjectOptimisticLockingFailureException(Department.class, departmentId)
+                                : new DepartmentNotFoundException("Department Not Available"))))
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Department> fetchDepartmentByName(String departmentName) {
+        return reactiveDepartmentRepository.findFirstByNormalizedNameOrderByDepartmentIdAsc(Department.normalizeName(departmentName));
+    }
+
+    // Taken first, so the rows of the write are stamped with it; a failed write rolls it back
+    private Mono<Long> nextTableVersion() {
+        return reactiveDepartmentRepository.incrementTableVersion()
+                .then(reactiveDepartmentRepository.findTableVersion());
+    }
+
+    private static String blankToNull(String value) {
+        return Objects.isNull(value) || value.isBlank() ? null : value;
+    }
+
+    // Hands out ids from blocks reserved on department_seq, following Hibernate's pooled optimizer so both stacks can share the table
+    private Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            IdBlock current = idBlock.get();
+            long departmentId = current.next.getAndIncrement();
+            if (departmentId <= current.hi) {
+                return Mono.just(departmentId);
+            }
+            return nextSequenceValue().map(hi -> {
+                IdBlock reserved = new IdBlock(Math.max(1, hi - ID_ALLOCATION_SIZE + 1), hi);
+                long reservedId = reserved.next.getAndIncrement();
+                idBlock.set(reserved);
+                return reservedId;
+            });
+        });
+    }
+
+    private Mono<Long> nextSequenceValue() {
+        String database = databaseClient.getConnectionFactory().getMetadata().getName();
+        if (!database.toLowerCase().contains("mysql")) {
+            return databaseClient.sql("select next value for department_seq")
+                    .map(row -> row.get(0, Long.class))
+                    .one();
+        }
+        // MySQL has no sequences: Hibernate emulates department_seq with a one-row table
+        return databaseClient.sql("update department_seq set next_val = last_insert_id(next_val + " + ID_ALLOCATION_SIZE + ")")
+                .then()
+                .then(databaseClient.sql("select last_insert_id() - " + ID_ALLOCATION_SIZE)
+                        .map(row -> row.get(0, Long.class))
+                        .one())
+                .as(transactionalOperator::transactional);
+    }
+
+    private static final class IdBlock {
+        private final AtomicLong next;
+        private final long hi;
+
+        private IdBlock(long next, long hi) {
+            this.next = new AtomicLong(next);
+            this.hi = hi;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveDepartmentService {
+    Mono<Department> saveDepartment(Department department);
+
+    Flux<Department> fetchDepartmentList();
+
+    Mono<Department> fetchDepartmentById(Long departmentId);
+
+    Mono<Void> deleteDepartmentById(Long departmentId);
+
+    Mono<Department> updateDepartment(Long departmentId, Department department);
+
+    Mono<Department> fetchDepartmentByName(String departmentName);
+}
@@ -0,0 +1,65 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller runs the loader, later callers wait for
+ * its result, or its exception, instead of running their own. Registration is a single {@code putIfAbsent} on a
+ * {@link ConcurrentHashMap}, so callers for different keys never wait on each other.
+ */
+final class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    SingleFlight(Counter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    <E extends Exception> V execute(K key, Loader<V, E> loader) throws E {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            coalesced.increment();
+            return await(inFlight);
+        }
+
+        try {
+            V value = loader.load();
+            call.complete(value);
+            return value;
+        } catch (Throwable t) {
+            call.completeExceptionally(t);
+            throw t;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    // The loader only throws E or unchecked exceptions, so the cast cannot fail
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> V await(CompletableFuture<V> call) throws E {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw (E) cause;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+-- Databases created by ddl-auto: update are baselined at V0 and run this too: every statement is a no-op for what
+-- they already have, and adds the columns that older schemas are missing
+create sequence if not exists department_seq start with 1 increment by 50;
+
+create table if not exists department (
+    department_id bigint not null,
+    version bigint,
+    department_address varchar(255),
+    department_code varchar(255),
+    department_name varchar(255),
+    normalized_name varchar(255),
+    primary key (department_id)
+);
+
+alter table department add column if not exists version bigint;
+alter table department add column if not exists normalized_name varchar(255);
+
+create index if not exists idx_department_normalized_name on department (normalized_name);
@@ -0,0 +1,6 @@
+-- Version of the department table: a single row that every transaction writing departments increments
+create table department_table_version (
+    version bigint not null
+);
+
+insert into department_table_version (version) values (0);
@@ -0,0 +1,14 @@
+-- Table version of the write that last touched each row, so readers can select only the rows written after a version
+alter table department add column if not exists table_version bigint;
+
+create index if not exists idx_department_table_version on department (table_version);
+
+-- Deleted ids with the table version of their delete, kept for department.snapshot.deletion-retention
+create table department_deletion (
+    department_id bigint not null,
+    table_version bigint not null,
+    deleted_at timestamp not null
+);
+
+create index idx_department_deletion_table_version on department_deletion (table_version);
+create index idx_department_deletion_deleted_at on department_deletion (deleted_at);
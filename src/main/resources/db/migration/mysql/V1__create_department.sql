@@ -0,0 +1,41 @@
+-- Schema Hibernate generated with ddl-auto: update. Existing databases are baselined at V0 and run this too: every
+-- statement is a no-op for what they already have, and adds the columns that older schemas are missing
+create table if not exists department (
+    department_id bigint not null,
+    version bigint,
+    department_address varchar(255),
+    department_code varchar(255),
+    department_name varchar(255),
+    normalized_name varchar(255),
+    primary key (department_id)
+) engine=InnoDB;
+
+-- MySQL has no "add column if not exists": each change is only prepared when information_schema says it is missing
+set @ddl = (select if(count(*) = 0, 'alter table department add column version bigint', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'department' and column_name = 'version');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+set @ddl = (select if(count(*) = 0, 'alter table department add column normalized_name varchar(255)', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'department' and column_name = 'normalized_name');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+set @ddl = (select if(count(*) = 0, 'create index idx_department_normalized_name on department (normalized_name)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'department'
+              and index_name = 'idx_department_normalized_name');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+-- MySQL has no sequences: Hibernate keeps department_seq as a one-row table, advanced by the allocation size of 50
+create table if not exists department_seq (
+    next_val bigint
+) engine=InnoDB;
+
+insert into department_seq select 1 from dual where not exists (select * from department_seq);
@@ -0,0 +1,3 @@
+-- Rows written before normalized_name and version existed, previously fixed on every start by DepartmentBackfill
+update department set normalized_name = lower(trim(department_name)) where normalized_name is null;
+update department set version = 0 where version is null;
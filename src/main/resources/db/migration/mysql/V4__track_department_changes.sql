@@ -0,0 +1,24 @@
+-- Table version of the write that last touched each row, so readers can select only the rows written after a version
+set @ddl = (select if(count(*) = 0, 'alter table department add column table_version bigint', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'department' and column_name = 'table_version');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+set @ddl = (select if(count(*) = 0, 'create index idx_department_table_version on department (table_version)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'department'
+              and index_name = 'idx_department_table_version');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+-- Deleted ids with the table version of their delete, kept for department.snapshot.deletion-retention
+create table department_deletion (
+    department_id bigint not null,
+    table_version bigint not null,
+    deleted_at datetime(6) not null,
+    index idx_department_deletion_table_version (table_version),
+    index idx_department_deletion_deleted_at (deleted_at)
+) engine=InnoDB;
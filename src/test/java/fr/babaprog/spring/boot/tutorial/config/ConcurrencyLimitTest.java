@@ -0,0 +1,118 @@
+package fr.babaprog.spring.boot.tutorial.config;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"department.concurrency-limit.enabled=true",
+        "department.concurrency-limit.reads.initial-limit=1", "department.concurrency-limit.reads.min-limit=1",
+        "department.concurrency-limit.reads.max-limit=1", "department.concurrency-limit.retry-after=PT2S"})
+@AutoConfigureMockMvc
+class ConcurrencyLimitTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private DepartmentService mockDepartmentService;
+
+    @Test
+    public void shouldShedReadsOverTheLimitAndKeepWritesAdmitted() throws Exception {
+        // Other tests of this class shed reads too
+        double readsRejected = meterRegistry.get("department.concurrency.rejected").tag("group", "read").counter().count();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockDepartmentService.fetchDepartmentById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Department.builder().departmentId(1L).departmentName("Slow").build();
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowRead = executor.submit(() -> mockMvc.perform(get("/departments/1")).andExpect(status().isOk()));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            mockMvc.perform(get("/departments/1"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "2"))
+                    .andExpect(jsonPath("$.message").value("Too Many Concurrent Requests"));
+            mockMvc.perform(delete("/departments/2")).andExpect(status().isOk());
+
+            release.countDown();
+            slowRead.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        assertEquals(readsRejected + 1, meterRegistry.get("department.concurrency.rejected").tag("group", "read").counter().count());
+        assertEquals(0.0, meterRegistry.get("department.concurrency.rejected").tag("group", "write").counter().count());
+        mockMvc.perform(get("/departments/1")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldHoldTheSlotOfAnAsyncRequestUntilItCompletes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> release.await(10, TimeUnit.SECONDS))
+                .when(mockDepartmentService).exportDepartments(any());
+        Mockito.when(mockDepartmentService.fetchDepartmentById(1L))
+                .thenReturn(Department.builder().departmentId(1L).departmentName("Fast").build());
+
+        MvcResult export = mockMvc.perform(get("/departments/export")).andReturn();
+        try {
+            assertTrue(export.getRequest().isAsyncStarted());
+            mockMvc.perform(get("/departments/1")).andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+        }
+        mockMvc.perform(asyncDispatch(export)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/departments/1")).andExpect(status().isOk());
+        assertEquals(0, meterRegistry.get("department.concurrency.in-flight").tag("group", "read").gauge().value());
+    }
+
+    @Test
+    public void shouldShrinkTheLimitWhenLatencyRises() {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(20, 2, 100);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(concurrencyLimit.tryAcquire());
+            concurrencyLimit.release(1_000_000, concurrencyLimit.limit());
+        }
+        int grown = concurrencyLimit.limit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(concurrencyLimit.tryAcquire());
+            concurrencyLimit.release(20_000_000, concurrencyLimit.limit());
+        }
+        assertTrue(concurrencyLimit.limit() < grown / 2, "limit " + concurrencyLimit.limit());
+        assertEquals(0, concurrencyLimit.inFlight());
+    }
+}
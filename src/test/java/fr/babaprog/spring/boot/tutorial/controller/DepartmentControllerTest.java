@@ -1,6 +1,18 @@
 package fr.babaprog.spring.boot.tutorial.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.babaprog.spring.boot.tutorial.config.DepartmentProtobuf;
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentBatchResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentDeleteResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentMultiGetResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.error.UnknownDepartmentFieldException;
 import fr.babaprog.spring.boot.tutorial.service.DepartmentService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,17 +21,34 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @WebMvcTest(DepartmentController.class)
+@TestPropertySource(properties = "department.http.gzip.min-size=0")
 class DepartmentControllerTest {
 
     @Autowired
@@ -61,6 +90,23 @@ class DepartmentControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isOk());
     }
 
+    @Test
+    public void saveDepartments() throws Exception {
+        Mockito.when(mockDepartmentService.saveDepartments(any()))
+                .thenReturn(new DepartmentBatchResult(List.of(department), Map.of(1, "Please Add a Department Name")));
+
+        mockMvc.perform(post("/departments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                    {"departmentName": "Mechanical Engineering", "departmentCode": "FR-01"},
+                                    {"departmentName": "", "departmentCode": "FR-02"}
+                                ]"""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.departments", hasSize(1)))
+                .andExpect(jsonPath("$.errors.1").value("Please Add a Department Name"));
+    }
+
     @Test
     public void fetchDepartmentList() throws Exception {
         Department department2 = Department.builder()
@@ -73,13 +119,56 @@ class DepartmentControllerTest {
         departments.add(department);
         departments.add(department2);
 
-        Mockito.when(mockDepartmentService.fetchDepartmentList()).thenReturn(departments);
+        Mockito.when(mockDepartmentService.fetchDepartmentList()).thenReturn(new DepartmentList(null, departments));
 
         mockMvc.perform(get("/departments").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)));
     }
 
+    @Test
+    public void fetchDepartmentPage() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentPage(0L, 1))
+                .thenReturn(new DepartmentPage(List.of(department), 1L));
+
+        mockMvc.perform(get("/departments?after=0&limit=1").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.departments", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor").value(1));
+    }
+
+    @Test
+    public void searchDepartments() throws Exception {
+        Mockito.when(mockDepartmentService.searchDepartments("mecha", 0, 20))
+                .thenReturn(new DepartmentSearchResult(List.of(department), 1));
+
+        mockMvc.perform(get("/departments/search?q=mecha").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.departments", hasSize(1)))
+                .andExpect(jsonPath("$.total").value(1));
+    }
+
+    @Test
+    public void exportDepartments() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Department> consumer = invocation.getArgument(0);
+            consumer.accept(department);
+            consumer.accept(department);
+            return null;
+        }).when(mockDepartmentService).exportDepartments(any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/departments/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(2, body.lines().count());
+    }
+
     @Test
     public void fetchDepartmentById() throws Exception {
         Mockito.when(mockDepartmentService.fetchDepartmentById(1L)).thenReturn(department);
@@ -91,6 +180,176 @@ class DepartmentControllerTest {
                 .andExpect(jsonPath("$.departmentCode").value(department.getDepartmentCode()));
     }
 
+    @Test
+    public void fetchDepartmentByIdNotModified() throws Exception {
+        department.setVersion(2L);
+        Mockito.when(mockDepartmentService.fetchDepartmentById(1L)).thenReturn(department);
+
+        mockMvc.perform(get("/departments/1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(header().string("ETag", "\"1-2\""))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+
+        mockMvc.perform(get("/departments/1").header("If-None-Match", "\"1-2\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void fetchMissingDepartmentById() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentById(2L)).thenThrow(new DepartmentNotFoundException("Department Not Available"));
+        Mockito.when(mockDepartmentService.fetchDepartmentById(3L)).thenThrow(new DepartmentNotFoundException("Department 3 Was Deleted"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/departments/2"))
+                    .andExpect(MockMvcResultMatchers.status().isNotFound())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(content().json("{\"status\":\"NOT_FOUND\",\"message\":\"Department Not Available\"}", true));
+        }
+        mockMvc.perform(get("/departments/3"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Department 3 Was Deleted"));
+    }
+
+    @Test
+    public void fetchDepartmentListNotModifiedSkipsLoading() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentListVersion()).thenReturn("2-7-9");
+
+        mockMvc.perform(get("/departments").header("If-None-Match", "\"2-7-9\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        Mockito.verify(mockDepartmentService, Mockito.never()).fetchDepartmentList();
+    }
+
+    @Test
+    public void fetchDepartmentListTaggedWithTheVersionItWasReadAt() throws Exception {
+        // A lagging replica answered the list after another one answered the version check
+        Mockito.when(mockDepartmentService.fetchDepartmentListVersion()).thenReturn("5");
+        Mockito.when(mockDepartmentService.fetchDepartmentList()).thenReturn(new DepartmentList("4", List.of(department)));
+
+        mockMvc.perform(get("/departments"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+        mockMvc.perform(get("/departments"))
+                .andExpect(header().string("ETag", "\"4\""));
+
+        Mockito.verify(mockDepartmentService, Mockito.times(2)).fetchDepartmentList();
+    }
+
+    @Test
+    public void fetchDepartmentListGzipFromCachedBytes() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentListVersion()).thenReturn("1-1-1");
+        Mockito.when(mockDepartmentService.fetchDepartmentList()).thenReturn(new DepartmentList("1-1-1", List.of(department)));
+
+        MvcResult result = mockMvc.perform(get("/departments").header("Accept-Encoding", "br, gzip"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"))
+                .andExpect(header().string("ETag", "\"1-1-1-gzip\""))
+                .andReturn();
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            String body = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(true, body.contains("\"departmentName\":\"Mechanical Engineering\""));
+        }
+
+        mockMvc.perform(get("/departments").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"1-1-1\""))
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        for (String malformed : List.of("gzip;q=", "gzip;q=x")) {
+            mockMvc.perform(get("/departments").header("Accept-Encoding", malformed))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(header().doesNotExist("Content-Encoding"));
+        }
+
+        Mockito.verify(mockDepartmentService, Mockito.times(1)).fetchDepartmentList();
+    }
+
+    @Test
+    public void fetchDepartmentsInBinaryFormats() throws Exception {
+        department.setVersion(2L);
+        Mockito.when(mockDepartmentService.fetchDepartmentById(1L)).thenReturn(department);
+        Mockito.when(mockDepartmentService.fetchDepartmentListVersion()).thenReturn("1-1-2");
+        Mockito.when(mockDepartmentService.fetchDepartmentList()).thenReturn(new DepartmentList("1-1-2", List.of(department)));
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+
+        MvcResult byId = mockMvc.perform(get("/departments/1").accept("application/json;q=0.5, application/cbor"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"1-2-cbor\""))
+                .andReturn();
+        assertEquals(department, cbor.readValue(byId.getResponse().getContentAsByteArray(), Department.class));
+
+        MvcResult list = mockMvc.perform(get("/departments").accept(DepartmentProtobuf.APPLICATION_PROTOBUF))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(content().contentType(DepartmentProtobuf.APPLICATION_PROTOBUF))
+                .andExpect(header().string("ETag", "\"1-1-2-protobuf\""))
+                .andReturn();
+        assertEquals(List.of(department), DepartmentProtobuf.decodeList(list.getResponse().getContentAsByteArray()));
+    }
+
+    @Test
+    public void rejectAcceptHeaderWithoutAnyServedFormat() throws Exception {
+        mockMvc.perform(get("/departments").accept(MediaType.TEXT_PLAIN))
+                .andExpect(MockMvcResultMatchers.status().isNotAcceptable());
+        mockMvc.perform(get("/departments/1").accept(MediaType.APPLICATION_XML))
+                .andExpect(MockMvcResultMatchers.status().isNotAcceptable());
+
+        Mockito.verify(mockDepartmentService, Mockito.never()).fetchDepartmentListVersion();
+        Mockito.verify(mockDepartmentService, Mockito.never()).fetchDepartmentById(1L);
+    }
+
+    @Test
+    public void saveDepartmentFromProtobuf() throws Exception {
+        Department inputDepartment = Department.builder()
+                .departmentName("Mechanical Engineering")
+                .departmentAddress("France")
+                .departmentCode("FR-01")
+                .build();
+        Mockito.when(mockDepartmentService.saveDepartment(inputDepartment)).thenReturn(department);
+
+        MvcResult result = mockMvc.perform(post("/departments")
+                        .contentType(DepartmentProtobuf.APPLICATION_PROTOBUF)
+                        .accept(DepartmentProtobuf.APPLICATION_PROTOBUF)
+                        .content(DepartmentProtobuf.encode(inputDepartment)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        assertEquals(department, DepartmentProtobuf.decode(result.getResponse().getContentAsByteArray()));
+
+        // Bean Validation still runs on binary bodies
+        mockMvc.perform(post("/departments")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(Jackson2ObjectMapperBuilder.cbor().build().writeValueAsBytes(Department.builder().departmentCode("FR-02").build())))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void fetchDepartmentChanges() throws Exception {
+        DepartmentChange change = new DepartmentChange("1f-8", DepartmentChange.Type.UPDATED, 1L, department);
+        Mockito.when(mockDepartmentService.fetchDepartmentChanges(eq("1f-7"), any()))
+                .thenReturn(CompletableFuture.completedFuture(new DepartmentChangeBatch(List.of(change), "1f-8", false)));
+        Mockito.when(mockDepartmentService.fetchDepartmentChanges(eq("0e-7"), any()))
+                .thenReturn(CompletableFuture.completedFuture(new DepartmentChangeBatch(List.of(), "1f-8", true)));
+
+        MvcResult result = mockMvc.perform(get("/departments/changes").param("since", "1f-7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.lastSequence").value("1f-8"))
+                .andExpect(jsonPath("$.changes[0].type").value("UPDATED"))
+                .andExpect(jsonPath("$.changes[0].department.departmentCode").value("FR-01"));
+
+        MvcResult resync = mockMvc.perform(get("/departments/changes").param("since", "0e-7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(resync))
+                .andExpect(MockMvcResultMatchers.status().isGone())
+                .andExpect(jsonPath("$.resyncRequired").value(true));
+    }
+
     @Test
     public void deleteDepartment() throws Exception {
         Mockito.doNothing().when(mockDepartmentService).deleteDepartmentById(1L);
@@ -127,6 +386,56 @@ class DepartmentControllerTest {
         Mockito.verify(mockDepartmentService, Mockito.times(1)).updateDepartment(1L, updatedDepartment);
     }
 
+    @Test
+    public void patchDepartmentWithStaleVersion() throws Exception {
+        Mockito.when(mockDepartmentService.updateDepartment(any(), any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Department.class, 1L));
+
+        mockMvc.perform(patch("/departments/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "departmentName": "Cars Engineering",
+                                    "version": 3
+                                }"""))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    @Test
+    public void fetchDepartmentFields() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentList(List.of("departmentId", "departmentName")))
+                .thenReturn(List.of(Map.of("departmentId", 1L, "departmentName", "Mechanical Engineering")));
+        Mockito.when(mockDepartmentService.fetchDepartmentById(1L, List.of("password")))
+                .thenThrow(new UnknownDepartmentFieldException("Unknown Department Field: password"));
+
+        mockMvc.perform(get("/departments?fields=departmentId,departmentName"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$[0].departmentName").value("Mechanical Engineering"))
+                .andExpect(jsonPath("$[0].departmentCode").doesNotExist());
+        mockMvc.perform(get("/departments/1?fields=password"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void fetchAndDeleteDepartmentsByIds() throws Exception {
+        Mockito.when(mockDepartmentService.fetchDepartmentsByIds(List.of(1L, 7L)))
+                .thenReturn(new DepartmentMultiGetResult(List.of(department), List.of(7L)));
+        Mockito.when(mockDepartmentService.deleteDepartmentsByIds(List.of(1L, 7L)))
+                .thenReturn(new DepartmentDeleteResult(2, 1));
+
+        mockMvc.perform(get("/departments?ids=1,7"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.departments", hasSize(1)))
+                .andExpect(jsonPath("$.missingIds[0]").value(7));
+        mockMvc.perform(post("/departments/lookup").contentType(MediaType.APPLICATION_JSON).content("[1, 7]"))
+                .andExpect(jsonPath("$.missingIds[0]").value(7));
+        mockMvc.perform(delete("/departments?ids=1,7"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1));
+        mockMvc.perform(post("/departments/bulk-delete").contentType(MediaType.APPLICATION_JSON).content("[1, 7]"))
+                .andExpect(jsonPath("$.requested").value(2));
+    }
+
     @Test
     public void fetchDepartmentByName() throws Exception {
         Mockito.when(mockDepartmentService.fetchDepartmentByName("Mechanical Engineering")).thenReturn(department);
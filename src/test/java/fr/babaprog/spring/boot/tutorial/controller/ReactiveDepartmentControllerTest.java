@@ -0,0 +1,92 @@
+package fr.babaprog.spring.boot.tutorial.controller;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-departments;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:reactive-schema-h2.sql"
+})
+@ActiveProfiles("reactive")
+class ReactiveDepartmentControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private Department saveDepartment(String departmentName) {
+        return webTestClient.post().uri("/departments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Department.builder().departmentName(departmentName).departmentCode("FR-01").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Department.class)
+                .returnResult().getResponseBody();
+    }
+
+    @Test
+    public void saveAndFetchDepartment() {
+        Department saved = saveDepartment("Mechanical Engineering");
+
+        assertThat(saved.getDepartmentId()).isPositive();
+        webTestClient.get().uri("/departments/{id}", saved.getDepartmentId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.departmentName").isEqualTo("Mechanical Engineering");
+        webTestClient.get().uri("/departments/name/{name}", " mechanical ENGINEERING ")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.departmentId").isEqualTo(saved.getDepartmentId());
+    }
+
+    @Test
+    public void streamDepartmentList() {
+        saveDepartment("Civil Engineering");
+        saveDepartment("Cars Engineering");
+
+        webTestClient.get().uri("/departments")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Department.class)
+                .value(departments -> assertThat(departments).hasSizeGreaterThanOrEqualTo(2));
+    }
+
+    @Test
+    public void updateDepartmentWithStaleVersion() {
+        Department saved = saveDepartment("Chemical Engineering");
+
+        webTestClient.patch().uri("/departments/{id}", saved.getDepartmentId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Department.builder().departmentCode("CH-02").version(saved.getVersion()).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.departmentCode").isEqualTo("CH-02")
+                .jsonPath("$.version").isEqualTo(saved.getVersion() + 1);
+
+        webTestClient.patch().uri("/departments/{id}", saved.getDepartmentId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Department.builder().departmentCode("CH-03").version(saved.getVersion()).build())
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void fetchMissingDepartment() {
+        webTestClient.get().uri("/departments/{id}", 999_999)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,70 @@
+package fr.babaprog.spring.boot.tutorial.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the real application on the embedded database with a mixed workload and fails when a budget is exceeded.
+ * Excluded from the default build; run it with mvn -Pload-test test and tune it with -Dloadtest.* properties. To
+ * compare with virtual threads, run it on Java 21 with mvn -Pload-test,virtual-threads test, once as is and once with
+ * -DargLine=-Dspring.profiles.include=virtual-threads.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("embedded")
+class DepartmentLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${loadtest.rate:100}")
+    private int rate;
+
+    @Value("${loadtest.seed:500}")
+    private int seed;
+
+    @Value("${loadtest.warmup:10s}")
+    private Duration warmup;
+
+    @Value("${loadtest.duration:30s}")
+    private Duration duration;
+
+    @Value("${loadtest.max-p99-millis:250}")
+    private double maxP99Millis;
+
+    @Value("${loadtest.min-throughput-ratio:0.95}")
+    private double minThroughputRatio;
+
+    @Value("${loadtest.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    private final Logger logger = Logger.getLogger(DepartmentLoadTest.class.getName());
+
+    @Test
+    public void mixedWorkloadStaysWithinBudgets() {
+        LoadGenerator loadGenerator = new LoadGenerator(URI.create("http://localhost:" + port), rate);
+        try {
+            loadGenerator.seed(seed);
+            logger.info("Warm-up: " + loadGenerator.run(warmup));
+
+            LoadGenerator.Result result = loadGenerator.run(duration);
+            logger.info("Result at " + rate + " req/s: " + result);
+
+            assertThat(result.errorRate()).as("error rate").isLessThanOrEqualTo(maxErrorRate);
+            assertThat(result.p99Millis()).as("p99 latency (ms)").isLessThanOrEqualTo(maxP99Millis);
+            assertThat(result.throughput()).as("throughput (req/s)").isGreaterThanOrEqualTo(rate * minThroughputRatio);
+        } finally {
+            loadGenerator.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package fr.babaprog.spring.boot.tutorial.load;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-model load generator: requests start at a fixed arrival rate whatever the response times, and latency is
+ * measured from the intended start so a stalled server is not hidden by a stalled client (coordinated omission).
+ */
+class LoadGenerator {
+
+    private static final Pattern DEPARTMENT_ID = Pattern.compile("\"departmentId\":(\\d+)");
+
+    enum Operation {
+        FETCH_BY_ID(50), FETCH_BY_NAME(15), FETCH_LIST(5), SAVE(15), UPDATE(10), DELETE(5);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    record Result(long requests, long errors, double throughput, double p50Millis, double p95Millis,
+                  double p99Millis, double maxMillis) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "requests=%d errors=%d throughput=%.1f req/s p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                    requests, errors, throughput, p50Millis, p95Millis, p99Millis, maxMillis);
+        }
+    }
+
+    private final URI baseUri;
+    private final int ratePerSecond;
+    private final HttpClient httpClient;
+    private final ExecutorService clientExecutor;
+    private final List<Long> departmentIds = new CopyOnWriteArrayList<>();
+    private final AtomicLong nameSequence = new AtomicLong();
+
+    LoadGenerator(URI baseUri, int ratePerSecond) {
+        this.baseUri = baseUri;
+        this.ratePerSecond = ratePerSecond;
+        this.clientExecutor = Executors.newFixedThreadPool(8);
+        this.httpClient = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    void seed(int departments) {
+        List<CompletableFuture<?>> saves = new ArrayList<>();
+        for (int i = 0; i < departments; i++) {
+            saves.add(send(Operation.SAVE));
+        }
+        CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).join();
+    }
+
+    Result run(Duration duration) {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intendedStart = intended;
+            inFlight.add(send(pickOperation()).whenComplete((status, failure) -> {
+                latencies.add(System.nanoTime() - intendedStart);
+                // 404 is expected when a read races with a delete of the same department
+                if (failure != null || (status >= 400 && status != 404)) {
+                    errors.incrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(failure -> null)
+                .join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted.length, errors.get(), sorted.length / elapsedSeconds,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95),
+                percentileMillis(sorted, 0.99), percentileMillis(sorted, 1.0));
+    }
+
+    void close() {
+        clientExecutor.shutdownNow();
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private Operation pickOperation() {
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += operation.weight;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Operation operation : Operation.values()) {
+            pick -= operation.weight;
+            if (pick < 0) {
+                return operation;
+            }
+        }
+        return Operation.FETCH_BY_ID;
+    }
+
+    private CompletableFuture<Integer> send(Operation operation) {
+        Long departmentId = departmentIds.isEmpty() ? 0L
+                : departmentIds.get(ThreadLocalRandom.current().nextInt(departmentIds.size()));
+
+        HttpRequest request = switch (operation) {
+            case FETCH_BY_ID -> get("/departments/" + departmentId);
+            case FETCH_BY_NAME -> get("/departments/name/" + URLEncoder.encode(
+                    "Load department " + ThreadLocalRandom.current().nextLong(Math.max(1, nameSequence.get())),
+                    StandardCharsets.UTF_8).replace("+", "%20"));
+            case FETCH_LIST -> get("/departments?limit=100");
+            case SAVE -> json("/departments", "POST", "{\"departmentName\":\"Load department "
+                    + nameSequence.getAndIncrement() + "\",\"departmentAddress\":\"France\",\"departmentCode\":\"LD-01\"}");
+            case UPDATE -> json("/departments/" + departmentId, "PATCH", "{\"departmentCode\":\"LD-"
+                    + ThreadLocalRandom.current().nextInt(100) + "\"}");
+            case DELETE -> {
+                departmentIds.remove(departmentId);
+                yield HttpRequest.newBuilder(baseUri.resolve("/departments/" + departmentId)).DELETE().build();
+            }
+        };
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (operation == Operation.SAVE && response.statusCode() == 200) {
+                Matcher matcher = DEPARTMENT_ID.matcher(response.body());
+                if (matcher.find()) {
+                    departmentIds.add(Long.valueOf(matcher.group(1)));
+                }
+            }
+            return response.statusCode();
+        });
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).GET().build();
+    }
+
+    private HttpRequest json(String path, String method, String body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
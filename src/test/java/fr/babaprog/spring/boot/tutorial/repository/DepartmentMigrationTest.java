@@ -0,0 +1,72 @@
+package fr.babaprog.spring.boot.tutorial.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepartmentMigrationTest {
+
+    private static Flyway flyway(String url) {
+        // Same settings as spring.flyway in application.yaml
+        return Flyway.configure()
+                .dataSource(url, "sa", "")
+                .locations("classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load();
+    }
+
+    @Test
+    public void shouldMigrateEmptyDatabase() throws SQLException {
+        String url = "jdbc:h2:mem:migration-fresh;DB_CLOSE_DELAY=-1";
+
+        assertThat(flyway(url).migrate().migrationsExecuted).isEqualTo(4);
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("insert into department (department_id, department_name, normalized_name, version)"
+                    + " values (next value for department_seq, 'Civil Engineering', 'civil engineering', 0)");
+            assertThat(count(statement, "select count(*) from department")).isEqualTo(1);
+            assertThat(count(statement, "select version from department_table_version")).isZero();
+        }
+    }
+
+    @Test
+    public void shouldUpgradeDatabaseCreatedByDdlAutoBeforeTheNewColumns() throws SQLException {
+        String url = "jdbc:h2:mem:migration-baseline;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            // The schema ddl-auto: update generated for the first version of Department
+            statement.execute("create sequence department_seq start with 1 increment by 50");
+            statement.execute("create table department (department_id bigint not null, department_address varchar(255),"
+                    + " department_code varchar(255), department_name varchar(255), primary key (department_id))");
+            statement.executeUpdate("insert into department values (1, 'Delhi', 'ME-011', '  Mechanical ENGINEERING ')");
+        }
+
+        assertThat(flyway(url).migrate().migrationsExecuted).isEqualTo(4);
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery("select normalized_name, version from department")) {
+            assertThat(row.next()).isTrue();
+            assertThat(row.getString("normalized_name")).isEqualTo("mechanical engineering");
+            assertThat(row.getLong("version")).isZero();
+            assertThat(count(statement, "select count(*) from information_schema.indexes"
+                    + " where index_name = 'IDX_DEPARTMENT_NORMALIZED_NAME'")).isPositive();
+        }
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
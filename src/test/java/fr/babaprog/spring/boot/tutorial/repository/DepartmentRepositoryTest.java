@@ -5,9 +5,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -62,6 +65,25 @@ class DepartmentRepositoryTest {
         assertThat(departments.size()).isEqualTo(2);
     }
 
+    @Test
+    @Transactional
+    public void shouldStreamAllDepartments() {
+        departmentRepository.save(department);
+
+        try (Stream<Department> departments = departmentRepository.streamAllDepartments()) {
+            assertThat(departments.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void shouldIncrementTableVersion() {
+        Long before = departmentRepository.findTableVersion();
+        departmentRepository.incrementTableVersion();
+
+        assertThat(departmentRepository.findTableVersion()).isEqualTo(before + 1);
+    }
+
     @Test
     public void shouldReturnDepartmentWhenIdIsKnown() {
         departmentRepository.save(department);
@@ -81,6 +103,17 @@ class DepartmentRepositoryTest {
         assertThat(getDepartmentByName.getDepartmentName()).isEqualTo("Mechanical Engineering");
     }
 
+    @Test
+    public void shouldReturnDepartmentWhenNormalizedNameIsFound() {
+        departmentRepository.save(department);
+
+        Department found = departmentRepository.findFirstByNormalizedNameOrderByDepartmentIdAsc(
+                Department.normalizeName("  MECHANICAL engineering "));
+
+        assertThat(found).isNotNull();
+        assertThat(found.getDepartmentId()).isEqualTo(department.getDepartmentId());
+    }
+
     @Test
     public void shouldUpdateDepartment() {
         departmentRepository.save(department);
@@ -96,6 +129,53 @@ class DepartmentRepositoryTest {
         assertThat(updatedDepartment.getDepartmentName()).isEqualTo("Car Engineering");
     }
 
+    @Test
+    @Transactional
+    public void shouldUpdateOnlyGivenColumnsWhenVersionMatches() {
+        departmentRepository.save(department);
+        Long version = department.getVersion();
+
+        int stale = departmentRepository.updateDepartment(department.getDepartmentId(), version + 1, 7L,
+                null, null, "CG-011", null);
+        int updated = departmentRepository.updateDepartment(department.getDepartmentId(), version, 7L,
+                null, null, "CG-011", null);
+
+        Department updatedDepartment = departmentRepository.findById(department.getDepartmentId()).get();
+        assertThat(stale).isZero();
+        assertThat(updated).isEqualTo(1);
+        assertThat(updatedDepartment.getDepartmentCode()).isEqualTo("CG-011");
+        assertThat(updatedDepartment.getDepartmentName()).isEqualTo("Mechanical Engineering");
+        assertThat(updatedDepartment.getVersion()).isEqualTo(version + 1);
+        assertThat(updatedDepartment.getTableVersion()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldSelectOnlyRequestedColumns() {
+        departmentRepository.save(department);
+
+        List<Map<String, Object>> rows = departmentRepository.findAllProjected(List.of("departmentName", "departmentId"));
+        Optional<Map<String, Object>> row = departmentRepository.findProjectedById(department.getDepartmentId(), List.of("departmentCode"));
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)).containsExactly(
+                Map.entry("departmentName", "Mechanical Engineering"),
+                Map.entry("departmentId", department.getDepartmentId()));
+        assertThat(row).contains(Map.of("departmentCode", "ME-011"));
+        assertThat(departmentRepository.findProjectedById(-1L, List.of("departmentCode"))).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void shouldFindAndDeleteByIdListInOneStatement() {
+        Department other = departmentRepository.save(Department.builder().departmentName("Civil Engineering").build());
+        departmentRepository.save(department);
+        List<Long> ids = List.of(department.getDepartmentId(), other.getDepartmentId(), -1L);
+
+        assertThat(departmentRepository.findByDepartmentIdIn(ids)).hasSize(2);
+        assertThat(departmentRepository.deleteByDepartmentIdIn(ids)).isEqualTo(2);
+        assertThat(departmentRepository.findByDepartmentIdIn(ids)).isEmpty();
+    }
+
     @Test
     public void shouldDeleteTheGivenDepartment() {
         departmentRepository.save(department);
@@ -0,0 +1,92 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChangeBatch;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "department.changes.capacity=4")
+class DepartmentChangeFeedTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private DepartmentChangeFeed departmentChangeFeed;
+
+    @Test
+    public void shouldWakeWaitingClientWithCommittedChanges() throws Exception {
+        String since = departmentChangeFeed.lastSequence();
+        CompletableFuture<DepartmentChangeBatch> waiting = departmentService.fetchDepartmentChanges(since, Duration.ofSeconds(10));
+        assertFalse(waiting.isDone());
+
+        Department saved = departmentService.saveDepartment(Department.builder()
+                .departmentName("Feed").departmentAddress("France").departmentCode("FD-01").build());
+
+        DepartmentChangeBatch batch = waiting.get(5, TimeUnit.SECONDS);
+        assertFalse(batch.isResyncRequired());
+        assertEquals(1, batch.getChanges().size());
+        assertEquals(DepartmentChange.Type.CREATED, batch.getChanges().get(0).getType());
+        assertEquals(departmentChangeFeed.sequenceOf(since) + 1, departmentChangeFeed.sequenceOf(batch.getLastSequence()));
+
+        departmentService.updateDepartment(saved.getDepartmentId(), Department.builder().departmentCode("FD-02").build());
+        departmentService.deleteDepartmentById(saved.getDepartmentId());
+
+        List<DepartmentChange> changes = departmentChangeFeed.read(batch.getLastSequence()).getChanges();
+        assertEquals(List.of(DepartmentChange.Type.UPDATED, DepartmentChange.Type.DELETED),
+                changes.stream().map(DepartmentChange::getType).toList());
+        assertEquals("FD-02", changes.get(0).getDepartment().getDepartmentCode());
+        assertFalse(departmentRepository.existsById(saved.getDepartmentId()));
+    }
+
+    @Test
+    public void shouldAskForResyncOnceChangesLeftTheBuffer() throws Exception {
+        long since = departmentChangeFeed.sequenceOf(departmentChangeFeed.lastSequence());
+        for (int i = 0; i < 5; i++) {
+            departmentChangeFeed.record(DepartmentChange.Type.DELETED, (long) -i, null);
+        }
+
+        DepartmentChangeBatch behind = departmentService.fetchDepartmentChanges(token(since), Duration.ZERO).get(1, TimeUnit.SECONDS);
+        assertTrue(behind.isResyncRequired());
+        assertEquals(token(since + 5), behind.getLastSequence());
+
+        assertEquals(4, departmentChangeFeed.read(token(since + 1)).getChanges().size());
+        assertTrue(departmentChangeFeed.read(token(since + 6)).isResyncRequired());
+
+        DepartmentChangeBatch idle = departmentService.fetchDepartmentChanges(token(since + 5), Duration.ofMillis(50)).get(1, TimeUnit.SECONDS);
+        assertFalse(idle.isResyncRequired());
+        assertTrue(idle.getChanges().isEmpty());
+        assertEquals(token(since + 5), idle.getLastSequence());
+    }
+
+    @Test
+    public void shouldAskForResyncWithATokenOfAnotherStartOrNode() throws Exception {
+        departmentChangeFeed.record(DepartmentChange.Type.DELETED, -1L, null);
+        long sequence = departmentChangeFeed.sequenceOf(departmentChangeFeed.lastSequence());
+
+        // Same sequence number, but issued before a restart or by another node
+        for (String since : List.of("0123456789abcdef-" + (sequence - 1), String.valueOf(sequence - 1), "garbage")) {
+            DepartmentChangeBatch batch = departmentService.fetchDepartmentChanges(since, Duration.ofSeconds(10)).get(1, TimeUnit.SECONDS);
+            assertTrue(batch.isResyncRequired());
+            assertTrue(batch.getChanges().isEmpty());
+            assertEquals(departmentChangeFeed.lastSequence(), batch.getLastSequence());
+        }
+    }
+
+    private String token(long sequence) {
+        return departmentChangeFeed.token(sequence);
+    }
+}
@@ -0,0 +1,110 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"department.id-filter.enabled=true", "department.id-filter.capacity=1000"})
+class DepartmentIdFilterTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private DepartmentIdFilter departmentIdFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+        departmentIdFilter.rebuild();
+    }
+
+    @Test
+    public void shouldKeepFalsePositivesRareAndNeverMissAnAddedId() {
+        int added = 100_000;
+        int probes = 1_000_000;
+        CuckooFilter filter = new CuckooFilter(added);
+        for (long id = 1; id <= added; id++) {
+            filter.add(id);
+        }
+
+        int falsePositives = 0;
+        for (long id = added + 1; id <= added + probes; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        for (long id = 1; id <= added; id += 2) {
+            assertTrue(filter.remove(id));
+        }
+
+        for (long id = 2; id <= added; id += 2) {
+            assertTrue(filter.mightContain(id));
+        }
+        assertEquals(added / 2, filter.size());
+        assertTrue(falsePositives < probes * 0.0002, falsePositives + " false positives");
+    }
+
+    @Test
+    public void shouldAnswerMissingIdsWithoutAQuery() throws DepartmentNotFoundException {
+        Counter rejected = meterRegistry.get("department.id-filter.rejected").counter();
+        Department saved = departmentService.saveDepartment(Department.builder().departmentName("Filtered").build());
+        assertEquals("Filtered", departmentService.fetchDepartmentById(saved.getDepartmentId()).getDepartmentName());
+
+        double before = rejected.count();
+        departmentService.deleteDepartmentById(saved.getDepartmentId());
+        DepartmentNotFoundException exception = assertThrows(DepartmentNotFoundException.class,
+                () -> departmentService.fetchDepartmentById(saved.getDepartmentId()));
+
+        assertEquals(before + 1, rejected.count());
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    public void shouldKeepIdsWhoseDeleteRolledBack() throws DepartmentNotFoundException {
+        Department saved = departmentService.saveDepartment(Department.builder().departmentName("Kept").build());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            departmentService.deleteDepartmentById(saved.getDepartmentId());
+            status.setRollbackOnly();
+        });
+
+        assertTrue(departmentIdFilter.mightExist(saved.getDepartmentId()));
+        assertEquals("Kept", departmentService.fetchDepartmentById(saved.getDepartmentId()).getDepartmentName());
+    }
+
+    @Test
+    public void shouldLetEveryIdThroughOnceSaturatedUntilRebuilt() throws InterruptedException {
+        // Holding the filter's lock keeps the rebuild started by the saturation from swapping the filter meanwhile
+        synchronized (departmentIdFilter) {
+            for (long id = 1_000_000; !departmentIdFilter.isSaturated(); id++) {
+                departmentIdFilter.added(id);
+            }
+            assertTrue(departmentIdFilter.mightExist(-1L));
+        }
+
+        for (int i = 0; i < 100 && departmentIdFilter.isSaturated(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(departmentIdFilter.isSaturated());
+        assertFalse(departmentIdFilter.mightExist(-1L));
+    }
+}
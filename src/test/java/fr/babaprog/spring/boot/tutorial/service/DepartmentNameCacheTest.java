@@ -0,0 +1,46 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.cache.caffeine.spec=maximumSize=2")
+class DepartmentNameCacheTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldNeverServeARenamedDepartmentUnderItsOldNameOnceTheCacheIsFull() throws DepartmentNotFoundException {
+        List<Department> departments = Stream.of("Chemistry", "Physics", "Biology", "Geology", "Botany")
+                .map(name -> departmentService.saveDepartment(Department.builder().departmentName(name).build()))
+                .toList();
+        for (int round = 0; round < 3; round++) {
+            departments.forEach(department -> departmentService.fetchDepartmentByName(department.getDepartmentName()));
+        }
+
+        for (Department department : departments) {
+            departmentService.updateDepartment(department.getDepartmentId(),
+                    Department.builder().departmentName(department.getDepartmentName() + " II").build());
+        }
+
+        departments.forEach(department -> assertNull(departmentService.fetchDepartmentByName(department.getDepartmentName())));
+    }
+}
@@ -0,0 +1,44 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNameConflictException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@SpringBootTest(properties = "department.name.unique=true")
+class DepartmentNameUniquenessTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @SpyBean
+    private DepartmentRepository departmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldRejectADuplicateNameTheCheckDidNotSee() {
+        departmentService.saveDepartment(Department.builder().departmentName("Chemistry").build());
+        Department other = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+        // As if the other write had committed just after the check ran
+        Mockito.doReturn(false).when(departmentRepository).existsByNormalizedNameAndDepartmentIdNot(anyString(), any());
+
+        assertThrows(DepartmentNameConflictException.class,
+                () -> departmentService.saveDepartment(Department.builder().departmentName(" CHEMISTRY ").build()));
+        assertThrows(DepartmentNameConflictException.class,
+                () -> departmentService.updateDepartment(other.getDepartmentId(), Department.builder().departmentName("chemistry").build()));
+        assertEquals(2, departmentRepository.count());
+    }
+}
@@ -0,0 +1,102 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.config.DataSourceRoutingConfig;
+import fr.babaprog.spring.boot.tutorial.config.ReadWriteRoutingDataSource;
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentList;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+// Two embedded databases stand in for replicas; nothing replicates, so where a row is read from shows the routing
+@SpringBootTest(properties = {
+        "department.datasource.routing.enabled=true",
+        "department.datasource.replicas[0].url=jdbc:h2:mem:replica0;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:reactive-schema-h2.sql'",
+        "department.datasource.replicas[0].username=sa",
+        "department.datasource.replicas[0].password=",
+        "department.datasource.replicas[1].url=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:reactive-schema-h2.sql'",
+        "department.datasource.replicas[1].username=sa",
+        "department.datasource.replicas[1].password="})
+@AutoConfigureMockMvc
+class DepartmentRoutingTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private DataSourceRoutingConfig.ReplicaDataSources replicaDataSources;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+        for (int i = 0; i < 2; i++) {
+            JdbcTemplate replica = new JdbcTemplate(replicaDataSources.dataSources().get(i));
+            replica.update("delete from department");
+            replica.update("insert into department (department_id, department_name, version) values (?, ?, 0)",
+                    1000 + i, "Replica " + i);
+            replica.update("update department_table_version set version = ?", 10 * (i + 1));
+        }
+    }
+
+    @Test
+    public void shouldReadListVersionFromTheReplicaTheListCameFrom() {
+        for (int i = 0; i < 4; i++) {
+            DepartmentList list = departmentService.fetchDepartmentList();
+            String replica = list.getDepartments().get(0).getDepartmentName();
+            assertEquals(replica.equals("Replica 0") ? "10" : "20", list.getVersion());
+        }
+    }
+
+    @Test
+    public void shouldReadFromReplicasInTurnAndWriteToPrimary() {
+        departmentService.saveDepartment(Department.builder().departmentName("Primary").build());
+
+        List<String> first = names(departmentService.fetchDepartmentList());
+        List<String> second = names(departmentService.fetchDepartmentList());
+        assertEquals(List.of("Replica 0", "Replica 1"), List.of(first.get(0), second.get(0)).stream().sorted().toList());
+
+        ReadWriteRoutingDataSource.usePrimaryOnly(true);
+        try {
+            assertEquals(List.of("Primary"), names(departmentService.fetchDepartmentList()));
+        } finally {
+            ReadWriteRoutingDataSource.usePrimaryOnly(false);
+        }
+    }
+
+    @Test
+    public void shouldKeepReadsOnThePrimaryAfterAWrite() throws Exception {
+        Cookie primaryCookie = mockMvc.perform(post("/departments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"departmentName\": \"Primary\"}"))
+                .andExpect(cookie().exists("department-primary"))
+                .andReturn().getResponse().getCookie("department-primary");
+
+        mockMvc.perform(get("/departments").cookie(primaryCookie))
+                .andExpect(jsonPath("$[0].departmentName").value("Primary"));
+    }
+
+    private static List<String> names(DepartmentList departments) {
+        return departments.getDepartments().stream().map(Department::getDepartmentName).toList();
+    }
+}
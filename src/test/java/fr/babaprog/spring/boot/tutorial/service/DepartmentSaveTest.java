@@ -0,0 +1,62 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DepartmentSaveTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldMergeDepartmentWithIdButNoVersion() {
+        Department existing = departmentService.saveDepartment(Department.builder()
+                .departmentName("Chemistry").departmentCode("CH-01").build());
+
+        Department merged = departmentService.saveDepartment(Department.builder()
+                .departmentId(existing.getDepartmentId()).departmentName("Biochemistry").build());
+
+        assertEquals(existing.getDepartmentId(), merged.getDepartmentId());
+        assertEquals(existing.getVersion() + 1, merged.getVersion());
+        Department stored = departmentRepository.findById(existing.getDepartmentId()).orElseThrow();
+        assertEquals("Biochemistry", stored.getDepartmentName());
+        assertEquals("biochemistry", stored.getNormalizedName());
+        assertNull(stored.getDepartmentCode());
+        assertEquals(1, departmentRepository.count());
+    }
+
+    @Test
+    public void shouldInsertDepartmentWithUnknownIdUnderANewId() {
+        Department saved = departmentService.saveDepartment(Department.builder()
+                .departmentId(987_654L).departmentName("Geology").build());
+
+        assertNotEquals(987_654L, saved.getDepartmentId());
+        assertTrue(departmentRepository.existsById(saved.getDepartmentId()));
+        assertFalse(departmentRepository.existsById(987_654L));
+    }
+
+    @Test
+    public void shouldRejectMergeWithStaleVersion() {
+        Department existing = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> departmentService.saveDepartment(Department.builder()
+                .departmentId(existing.getDepartmentId()).version(existing.getVersion() + 1).departmentName("Optics").build()));
+        assertEquals("Physics", departmentRepository.findById(existing.getDepartmentId()).orElseThrow().getDepartmentName());
+    }
+}
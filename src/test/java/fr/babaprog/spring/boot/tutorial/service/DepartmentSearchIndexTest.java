@@ -0,0 +1,42 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DepartmentSearchIndexTest {
+
+    @Autowired
+    private DepartmentSearchIndex departmentSearchIndex;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    @Transactional
+    public void shouldRebuildWithoutKeepingEntitiesInThePersistenceContext() {
+        departmentRepository.deleteAll();
+        IntStream.range(0, 20).forEach(i -> departmentRepository.save(Department.builder().departmentName("Thermodynamics " + i).build()));
+        entityManager.flush();
+        entityManager.clear();
+
+        departmentSearchIndex.rebuild();
+
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+        assertEquals(20, departmentSearchIndex.search("thermodynamics", 0, 100).getTotal());
+    }
+}
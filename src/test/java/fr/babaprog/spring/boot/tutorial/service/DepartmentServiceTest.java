@@ -1,21 +1,39 @@
 package fr.babaprog.spring.boot.tutorial.service;
 
 import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentBatchResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentMultiGetResult;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentPage;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
 import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
 import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 
@@ -28,6 +46,12 @@ class DepartmentServiceTest {
     @MockBean
     private DepartmentRepository mockDepartmentRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     void setUp() {
         Department department =
@@ -49,11 +73,13 @@ class DepartmentServiceTest {
         departmentsList.add(department);
         departmentsList.add(department2);
 
-        Mockito.when(mockDepartmentRepository.findByDepartmentNameIgnoreCase("FR")).thenReturn(department);
+        Mockito.when(mockDepartmentRepository.findFirstByNormalizedNameOrderByDepartmentIdAsc("fr")).thenReturn(department);
         Mockito.when(mockDepartmentRepository.save(any(Department.class))).thenReturn(department);
         Mockito.when(mockDepartmentRepository.findAll()).thenReturn(departmentsList);
         Mockito.when(mockDepartmentRepository.findById(1L)).thenReturn(Optional.ofNullable(department));
         Mockito.when(mockDepartmentRepository.save(any(Department.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(mockDepartmentRepository.saveAndFlush(any(Department.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(mockDepartmentRepository.findTableVersion()).thenReturn(7L);
     }
 
     @Test
@@ -74,12 +100,28 @@ class DepartmentServiceTest {
                 .build();
 
         Department savedDepartment = departmentService.saveDepartment(departmentToSave);
+        departmentToSave.setTableVersion(7L);
         assertEquals(departmentToSave, savedDepartment);
     }
 
+    @Test
+    public void shouldSaveValidDepartmentsAndReportInvalidOnes() {
+        List<Department> departments = List.of(
+                Department.builder().departmentName("FR").departmentCode("FR-01").build(),
+                Department.builder().departmentName("").departmentCode("XX-00").build(),
+                Department.builder().departmentName("IT").departmentCode("IT-02").build());
+
+        DepartmentBatchResult result = departmentService.saveDepartments(departments);
+
+        assertEquals(2, result.getDepartments().size());
+        assertNotNull(result.getDepartments().get(0).getDepartmentId());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().containsKey(1));
+    }
+
     @Test
     public void shouldReturnAllDepartments() {
-        List<Department> allDepartments = departmentService.fetchDepartmentList();
+        List<Department> allDepartments = departmentService.fetchDepartmentList().getDepartments();
 
         assertFalse(allDepartments.isEmpty());
         assertEquals(allDepartments.size(), 2);
@@ -94,6 +136,49 @@ class DepartmentServiceTest {
         assertEquals(allDepartments.get(1).getDepartmentCode(), "IT-02");
     }
 
+    @Test
+    public void shouldReturnDepartmentPageWithNextCursor() {
+        List<Department> departments = mockDepartmentRepository.findAll();
+        Mockito.when(mockDepartmentRepository.findByDepartmentIdGreaterThanOrderByDepartmentIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(departments);
+
+        DepartmentPage page = departmentService.fetchDepartmentPage(null, 1);
+
+        assertEquals(1, page.getDepartments().size());
+        assertEquals(1L, page.getNextCursor());
+    }
+
+    @Test
+    public void shouldSearchIndexedDepartmentsByPrefixAndTypo() {
+        // Saved over existing rows, so the departments keep their ids
+        Mockito.when(mockDepartmentRepository.findById(40L)).thenReturn(Optional.of(Department.builder().departmentId(40L).build()));
+        Mockito.when(mockDepartmentRepository.findById(41L)).thenReturn(Optional.of(Department.builder().departmentId(41L).build()));
+        departmentService.saveDepartment(Department.builder()
+                .departmentId(40L).departmentName("Chemistry Lab").departmentCode("CH-40").departmentAddress("Lyon").build());
+        departmentService.saveDepartment(Department.builder()
+                .departmentId(41L).departmentName("Physics").departmentCode("PH-41").departmentAddress("Chemistry Street").build());
+
+        DepartmentSearchResult byPrefix = departmentService.searchDepartments("chem", 0, 10);
+        assertEquals(2, byPrefix.getTotal());
+        assertEquals(40L, byPrefix.getDepartments().get(0).getDepartmentId());
+
+        DepartmentSearchResult byTypo = departmentService.searchDepartments("chemsitry lab", 0, 1);
+        assertEquals(1, byTypo.getDepartments().size());
+        assertEquals(40L, byTypo.getDepartments().get(0).getDepartmentId());
+
+        departmentService.deleteDepartmentById(40L);
+        assertEquals(1, departmentService.searchDepartments("chemistry", 0, 10).getTotal());
+    }
+
+    @Test
+    public void shouldTimeServiceMethods() {
+        departmentService.fetchDepartmentList();
+
+        Timer timer = meterRegistry.find("department.service").tag("method", "fetchDepartmentList").timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+    }
+
     @Test
     public void shouldReturnDepartmentById() throws DepartmentNotFoundException {
         Long departmentId = 1L;
@@ -112,39 +197,186 @@ class DepartmentServiceTest {
         assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    public void shouldServeRepeatedLookupsFromCacheUntilUpdated() throws DepartmentNotFoundException {
+        Long departmentId = 3L;
+        Department department = Department.builder()
+                .departmentId(departmentId)
+                .departmentName("ES")
+                .departmentCode("ES-03")
+                .build();
+        Mockito.when(mockDepartmentRepository.findById(departmentId)).thenReturn(Optional.of(department));
+        Mockito.when(mockDepartmentRepository.findFirstByNormalizedNameOrderByDepartmentIdAsc("es")).thenReturn(department);
+
+        departmentService.fetchDepartmentById(departmentId);
+        departmentService.fetchDepartmentById(departmentId);
+        departmentService.fetchDepartmentByName("ES");
+        departmentService.fetchDepartmentByName(" es ");
+        verify(mockDepartmentRepository, times(1)).findById(departmentId);
+        verify(mockDepartmentRepository, times(1)).findFirstByNormalizedNameOrderByDepartmentIdAsc("es");
+
+        Department renamed = Department.builder()
+                .departmentId(departmentId)
+                .departmentName("Spain")
+                .departmentCode("ES-03")
+                .build();
+        Mockito.when(mockDepartmentRepository.updateDepartment(departmentId, null, 7L, "Spain", "spain", null, null)).thenReturn(1);
+        Mockito.when(mockDepartmentRepository.findById(departmentId)).thenReturn(Optional.of(renamed));
+
+        departmentService.updateDepartment(departmentId, Department.builder().departmentName("Spain").build());
+
+        assertEquals("Spain", departmentService.fetchDepartmentById(departmentId).getDepartmentName());
+        departmentService.fetchDepartmentByName("ES");
+        // one lookup to return the updated row, one after the eviction
+        verify(mockDepartmentRepository, times(3)).findById(departmentId);
+        verify(mockDepartmentRepository, times(2)).findFirstByNormalizedNameOrderByDepartmentIdAsc("es");
+    }
+
+    @Test
+    public void shouldKeepCachedDepartmentWhenUpdateRollsBack() throws DepartmentNotFoundException {
+        Long departmentId = 4L;
+        Department department = Department.builder().departmentId(departmentId).departmentName("DE").build();
+        Mockito.when(mockDepartmentRepository.findById(departmentId)).thenReturn(Optional.of(department));
+        Mockito.when(mockDepartmentRepository.updateDepartment(departmentId, null, 7L, "Germany", "germany", null, null)).thenReturn(1);
+        departmentService.fetchDepartmentById(departmentId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                departmentService.updateDepartment(departmentId, Department.builder().departmentName("Germany").build());
+            } catch (DepartmentNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        assertEquals("DE", departmentService.fetchDepartmentById(departmentId).getDepartmentName());
+        // the first lookup and the one made by the update; the rolled back update evicted nothing
+        verify(mockDepartmentRepository, times(2)).findById(departmentId);
+    }
+
+    @Test
+    public void shouldReturnDepartmentsInRequestOrderAndReportMissingIds() {
+        List<Department> departments = mockDepartmentRepository.findAll();
+        Mockito.when(mockDepartmentRepository.findByDepartmentIdIn(List.of(2L, 9L, 1L))).thenReturn(departments);
+
+        DepartmentMultiGetResult result = departmentService.fetchDepartmentsByIds(List.of(2L, 9L, 1L, 2L));
+
+        assertEquals(List.of(2L, 1L), result.getDepartments().stream().map(Department::getDepartmentId).toList());
+        assertEquals(List.of(9L), result.getMissingIds());
+    }
+
     @Test
     public void shouldDeleteDepartment() {
         Long departmentIdToDelete = 1L;
 
         departmentService.deleteDepartmentById(departmentIdToDelete);
 
-        verify(mockDepartmentRepository).deleteById(departmentIdToDelete);
+        verify(mockDepartmentRepository).deleteByDepartmentIdIn(List.of(departmentIdToDelete));
+        verify(mockDepartmentRepository, Mockito.never()).findById(departmentIdToDelete);
     }
 
     @Test
-    public void shouldUpdateDepartment() {
+    public void shouldKeepCachedDepartmentWhenDeleteRollsBack() throws DepartmentNotFoundException {
+        Long departmentId = 6L;
+        Department department = Department.builder().departmentId(departmentId).departmentName("PT").build();
+        Mockito.when(mockDepartmentRepository.findById(departmentId)).thenReturn(Optional.of(department));
+        departmentService.fetchDepartmentById(departmentId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            departmentService.deleteDepartmentsByIds(List.of(departmentId));
+            status.setRollbackOnly();
+        });
+
+        assertEquals("PT", departmentService.fetchDepartmentById(departmentId).getDepartmentName());
+        verify(mockDepartmentRepository, times(1)).findById(departmentId);
+    }
+
+    @Test
+    public void shouldUpdateDepartment() throws DepartmentNotFoundException {
         Long departmentIdToUpdate = 1L;
 
         Department updatedDepartment = Department.builder()
                 .departmentName("Updated Name")
-                .departmentCode("Updated Code")
+                .departmentCode("")
                 .departmentAddress("Updated Address")
+                .version(4L)
                 .build();
 
         Department existingDepartment = Department.builder()
-                .departmentName("Old Name")
+                .departmentId(departmentIdToUpdate)
+                .departmentName("Updated Name")
                 .departmentCode("Old Code")
-                .departmentAddress("Old Address")
+                .departmentAddress("Updated Address")
+                .version(5L)
                 .build();
 
+        Mockito.when(mockDepartmentRepository.updateDepartment(departmentIdToUpdate, 4L, 7L,
+                "Updated Name", "updated name", null, "Updated Address")).thenReturn(1);
         Mockito.when(mockDepartmentRepository.findById(departmentIdToUpdate)).thenReturn(Optional.of(existingDepartment));
-        Mockito.when(mockDepartmentRepository.save(any(Department.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Department updated = departmentService.updateDepartment(departmentIdToUpdate, updatedDepartment);
 
-        Mockito.verify(mockDepartmentRepository).save(updatedDepartment);
+        verify(mockDepartmentRepository, Mockito.never()).save(any(Department.class));
+        assertEquals(existingDepartment, updated);
+    }
+
+    @Test
+    public void shouldRejectUpdateOfMissingOrStaleDepartment() {
+        Mockito.when(mockDepartmentRepository.existsById(1L)).thenReturn(true);
+        Department update = Department.builder().departmentName("New Name").version(1L).build();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> departmentService.updateDepartment(1L, update));
+        assertThrows(DepartmentNotFoundException.class, () -> departmentService.updateDepartment(5L, update));
+    }
+
+    @Test
+    public void shouldShareOneQueryBetweenConcurrentLookupsOfTheSameDepartment() throws Exception {
+        Department department = Department.builder().departmentId(70L).departmentName("HR").build();
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockDepartmentRepository.findById(70L)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(department);
+        });
+
+        for (Future<Department> result : concurrentLookups(70L, 8, release)) {
+            assertSame(department, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(mockDepartmentRepository, times(1)).findById(70L);
+    }
+
+    @Test
+    public void shouldPropagateAFailedLookupToEveryWaitingCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockDepartmentRepository.findById(71L)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        for (Future<Department> result : concurrentLookups(71L, 8, release)) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DepartmentNotFoundException.class, exception.getCause());
+        }
+        verify(mockDepartmentRepository, times(1)).findById(71L);
+    }
 
-        assertEquals(updatedDepartment, updated);
+    // Releases the first query only once every other caller is waiting on it
+    private List<Future<Department>> concurrentLookups(Long departmentId, int callers, CountDownLatch release) throws InterruptedException {
+        Counter coalesced = meterRegistry.get("department.lookup.coalesced").tag("method", "fetchDepartmentById").counter();
+        double before = coalesced.count();
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Department>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> departmentService.fetchDepartmentById(departmentId)));
+        }
+        executor.shutdown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalesced.count() - before < callers - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(callers - 1, coalesced.count() - before);
+        release.countDown();
+        return results;
     }
 
-}
\ No newline at end of file
+}
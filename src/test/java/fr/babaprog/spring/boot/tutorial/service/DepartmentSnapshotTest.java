@@ -0,0 +1,126 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "department.snapshot.enabled=true")
+class DepartmentSnapshotTest {
+
+    @Autowired
+    private DepartmentSnapshot departmentSnapshot;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+        departmentSnapshot.load();
+    }
+
+    @Test
+    public void shouldBehaveLikeAMapForRandomKeys() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        assertEquals(expected.size(), map.keys().length);
+    }
+
+    @Test
+    public void shouldServeReadsFromTheSnapshot() throws DepartmentNotFoundException {
+        Department saved = departmentService.saveDepartment(Department.builder()
+                .departmentName("Génie Civil").departmentCode("GC-01").build());
+
+        // Gone from the database but still held by the snapshot until the next refresh
+        departmentRepository.deleteAllInBatch();
+        Department found = departmentService.fetchDepartmentById(saved.getDepartmentId());
+
+        assertEquals("Génie Civil", found.getDepartmentName());
+        assertNull(found.getDepartmentAddress());
+        // The full list always comes from the table, so its bytes match the table version they are cached under
+        assertEquals(0, departmentService.fetchDepartmentList().getDepartments().size());
+        assertTrue(departmentSnapshot.estimatedBytes() > 0);
+    }
+
+    @Test
+    public void shouldRefreshRowsWrittenElsewhere() {
+        Department inserted = writtenElsewhere(tableVersion -> departmentRepository.save(Department.builder()
+                .departmentName("Physics").departmentCode("PH-01").tableVersion(tableVersion).build()));
+        Department deleted = writtenElsewhere(tableVersion -> departmentRepository.save(Department.builder()
+                .departmentName("Biology").tableVersion(tableVersion).build()));
+        departmentSnapshot.refresh();
+        assertEquals(2, departmentSnapshot.size());
+
+        writtenElsewhere(tableVersion -> departmentRepository.updateDepartment(
+                inserted.getDepartmentId(), null, tableVersion, "Astrophysics", "astrophysics", null, null));
+        writtenElsewhere(tableVersion -> {
+            departmentRepository.recordDeletions(List.of(deleted.getDepartmentId()), tableVersion, Instant.now());
+            return departmentRepository.deleteByDepartmentIdIn(List.of(deleted.getDepartmentId()));
+        });
+        departmentSnapshot.refresh();
+
+        assertEquals(1, departmentSnapshot.size());
+        Department refreshed = departmentSnapshot.get(inserted.getDepartmentId());
+        assertEquals("Astrophysics", refreshed.getDepartmentName());
+        assertEquals("PH-01", refreshed.getDepartmentCode());
+        assertEquals(inserted.getVersion() + 1, refreshed.getVersion());
+        assertNull(departmentSnapshot.get(deleted.getDepartmentId()));
+    }
+
+    @Test
+    public void shouldOnlyReadRowsWrittenSinceTheLastRefresh() throws DepartmentNotFoundException {
+        Department physics = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+        Department biology = departmentService.saveDepartment(Department.builder().departmentName("Biology").build());
+        departmentSnapshot.refresh();
+
+        // Not stamped with a later table version, so the refresh does not look at this row again
+        writtenElsewhere(tableVersion -> departmentRepository.updateDepartment(
+                physics.getDepartmentId(), null, physics.getTableVersion(), "Optics", "optics", null, null));
+        departmentService.updateDepartment(biology.getDepartmentId(), Department.builder().departmentName("Botany").build());
+        departmentSnapshot.refresh();
+
+        assertEquals("Physics", departmentSnapshot.get(physics.getDepartmentId()).getDepartmentName());
+        assertEquals("Botany", departmentSnapshot.get(biology.getDepartmentId()).getDepartmentName());
+    }
+
+    // Other nodes write through the service, which takes a table version first and stamps the rows it writes with it
+    private <T> T writtenElsewhere(Function<Long, T> write) {
+        return transactionTemplate.execute(status -> {
+            departmentRepository.incrementTableVersion();
+            return write.apply(departmentRepository.findTableVersion());
+        });
+    }
+}
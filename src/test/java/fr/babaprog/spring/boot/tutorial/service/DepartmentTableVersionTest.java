@@ -0,0 +1,81 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNotFoundException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DepartmentTableVersionTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldMoveTableVersionOnEveryWrite() throws DepartmentNotFoundException {
+        long version = tableVersion();
+
+        Department saved = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+        version = assertMoved(version);
+        departmentService.saveDepartments(List.of(Department.builder().departmentName("Chemistry").build()));
+        version = assertMoved(version);
+        departmentService.updateDepartment(saved.getDepartmentId(), Department.builder().departmentCode("PH-01").build());
+        version = assertMoved(version);
+        departmentService.deleteDepartmentById(saved.getDepartmentId());
+        assertMoved(version);
+    }
+
+    @Test
+    public void shouldKeepTableVersionWhenAWriteFails() {
+        Department saved = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+        long version = tableVersion();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> departmentService.updateDepartment(
+                saved.getDepartmentId(), Department.builder().version(saved.getVersion() + 1).departmentCode("PH-01").build()));
+
+        assertEquals(version, tableVersion());
+    }
+
+    @Test
+    public void shouldStampWrittenRowsAndDeletionsWithTheirTableVersion() throws DepartmentNotFoundException {
+        Department saved = departmentService.saveDepartment(Department.builder().departmentName("Physics").build());
+        assertEquals(tableVersion(), stamp(saved.getDepartmentId()));
+
+        departmentService.updateDepartment(saved.getDepartmentId(), Department.builder().departmentCode("PH-01").build());
+        assertEquals(tableVersion(), stamp(saved.getDepartmentId()));
+
+        long beforeDelete = tableVersion();
+        departmentService.deleteDepartmentById(saved.getDepartmentId());
+        assertEquals(List.of(saved.getDepartmentId()), departmentRepository.findDeletedDepartmentIds(beforeDelete));
+    }
+
+    private long stamp(Long departmentId) {
+        return departmentRepository.findById(departmentId).orElseThrow().getTableVersion();
+    }
+
+    private long tableVersion() {
+        return Long.parseLong(departmentService.fetchDepartmentListVersion());
+    }
+
+    private long assertMoved(long previous) {
+        long version = tableVersion();
+        assertTrue(version > previous);
+        return version;
+    }
+}
@@ -0,0 +1,172 @@
+package fr.babaprog.spring.boot.tutorial.service;
+
+import fr.babaprog.spring.boot.tutorial.entity.Department;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentChange;
+import fr.babaprog.spring.boot.tutorial.entity.DepartmentSearchResult;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentNameConflictException;
+import fr.babaprog.spring.boot.tutorial.error.DepartmentWriteRejectedException;
+import fr.babaprog.spring.boot.tutorial.repository.DepartmentRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"department.write-pipeline.enabled=true", "department.write-pipeline.max-wait=PT0.05S",
+        "department.name.unique=true", "department.write-pipeline.result-timeout=PT0.5S", "department.id-filter.enabled=true"})
+class DepartmentWritePipelineTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private DepartmentChangeFeed departmentChangeFeed;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldGroupConcurrentCreationsAndFailOnlyTheConflictingOne() throws Exception {
+        int callers = 40;
+        DistributionSummary groupSizes = meterRegistry.get("department.write.group.size").summary();
+        long groupsBefore = groupSizes.count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Department>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            // The last two callers ask for the same name
+            String departmentName = i < callers - 1 ? "Department " + i : "Department 0";
+            results.add(executor.submit(() -> departmentService.saveDepartment(
+                    Department.builder().departmentName(departmentName).departmentCode("GC").build())));
+        }
+        executor.shutdown();
+
+        int saved = 0;
+        int conflicts = 0;
+        for (Future<Department> result : results) {
+            try {
+                assertNotNull(result.get(10, TimeUnit.SECONDS).getDepartmentId());
+                saved++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(DepartmentNameConflictException.class, e.getCause());
+                conflicts++;
+            }
+        }
+
+        assertEquals(callers - 1, saved);
+        assertEquals(1, conflicts);
+        assertEquals(callers - 1, departmentRepository.count());
+        assertTrue(groupSizes.count() - groupsBefore < callers);
+    }
+
+    @Test
+    public void shouldSurviveAFailingGroupAndRejectWritesOnceStopped() {
+        // A pipeline of its own, so stopping it leaves the one of the application running
+        DepartmentWritePipeline pipeline = beanFactory.createBean(DepartmentWritePipeline.class);
+        pipeline.start(group -> {
+            if ("Broken".equals(group.get(0).getDepartmentName())) {
+                throw new AssertionError("Broken group");
+            }
+            return Map.of();
+        });
+
+        assertThrows(DepartmentWriteRejectedException.class,
+                () -> pipeline.submit(Department.builder().departmentName("Broken").build()));
+        assertEquals("Kept", pipeline.submit(Department.builder().departmentName("Kept").build()).getDepartmentName());
+
+        pipeline.stop();
+        assertThrows(DepartmentWriteRejectedException.class,
+                () -> pipeline.submit(Department.builder().departmentName("Late").build()));
+    }
+
+    @Test
+    public void shouldRejectWritesWhoseGroupDoesNotCommitInTime() {
+        DepartmentWritePipeline pipeline = beanFactory.createBean(DepartmentWritePipeline.class);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.start(group -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of();
+        });
+
+        try {
+            DepartmentWriteRejectedException exception = assertThrows(DepartmentWriteRejectedException.class,
+                    () -> pipeline.submit(Department.builder().departmentName("Slow").build()));
+            assertEquals("Department Write Timed Out", exception.getMessage());
+        } finally {
+            release.countDown();
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void shouldPublishACreationWhoseCallerTimedOut() throws Exception {
+        String since = departmentChangeFeed.lastSequence();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Holding the table version row stalls the group commit past the result timeout
+        Thread holder = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            departmentRepository.incrementTableVersion();
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        try {
+            DepartmentWriteRejectedException exception = assertThrows(DepartmentWriteRejectedException.class,
+                    () -> departmentService.saveDepartment(Department.builder().departmentName("Late Arrival").build()));
+            assertEquals("Department Write Timed Out", exception.getMessage());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        DepartmentSearchResult found = departmentService.searchDepartments("late arrival", 0, 1);
+        for (int i = 0; i < 50 && found.getTotal() == 0; i++) {
+            Thread.sleep(100);
+            found = departmentService.searchDepartments("late arrival", 0, 1);
+        }
+        assertEquals(1, found.getTotal());
+        Long departmentId = found.getDepartments().get(0).getDepartmentId();
+        // Let through by the id filter, and announced to change followers
+        assertEquals("Late Arrival", departmentService.fetchDepartmentById(departmentId).getDepartmentName());
+        assertTrue(departmentChangeFeed.read(since).getChanges().stream().anyMatch(change ->
+                change.getType() == DepartmentChange.Type.CREATED && departmentId.equals(change.getDepartmentId())));
+    }
+}
@@ -0,0 +1,121 @@
+package fr.babaprog.spring.boot.tutorial.startup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Time from JVM launch to the first successful GET /departments, for the packaged application started as before
+ * and as the fast-startup build runs it (AOT, the CDS archive, ddl-auto: validate), each on a fresh in-memory H2
+ * database. Runs in the integration-test phase of mvn -Pfast-startup verify and fails unless the fast-startup median
+ * is at most startup.max-ratio times the baseline median, measured on the same machine in the same run; tune it with
+ * -Dstartup.* properties.
+ */
+class StartupTimeIT {
+
+    private static final String MAIN_CLASS = "fr.babaprog.spring.boot.tutorial.SpringBootTutorialApplication";
+
+    private final String classpath = System.getProperty("startup.classpath");
+    private final String cdsArchive = System.getProperty("startup.cds-archive");
+    private final Path logDirectory = Path.of(System.getProperty("startup.log-dir", "target/startup"));
+    private final int runs = Integer.getInteger("startup.runs", 5);
+    private final Duration timeout = Duration.ofSeconds(Integer.getInteger("startup.timeout-seconds", 120));
+    // First measurement was 10290 ms against 17638 ms, a ratio of 0.58
+    private final double maxRatio = Double.parseDouble(System.getProperty("startup.max-ratio", "0.8"));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final Logger logger = Logger.getLogger(StartupTimeIT.class.getName());
+
+    @Test
+    public void fastStartupBuildAnswersFasterThanBaseline() throws Exception {
+        assertThat(classpath).as("startup.classpath").isNotBlank();
+        Files.createDirectories(logDirectory);
+
+        List<Long> baseline = measure("baseline", List.of());
+        List<Long> fastStartup = measure("fast-startup", List.of(
+                "-XX:SharedArchiveFile=" + cdsArchive,
+                "-Dspring.aot.enabled=true",
+                "-Dspring.profiles.active=fast-startup"));
+
+        logger.info("Time to first /departments response over " + runs + " runs: baseline " + summary(baseline)
+                + ", fast-startup " + summary(fastStartup));
+        assertThat((double) median(fastStartup))
+                .as("fast-startup median (ms), against %s times the baseline median of %d ms", maxRatio, median(baseline))
+                .isLessThanOrEqualTo(maxRatio * median(baseline));
+    }
+
+    private List<Long> measure(String mode, List<String> jvmOptions) throws Exception {
+        List<Long> millis = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            millis.add(timeToFirstResponse(jvmOptions, logDirectory.resolve(mode + "-" + run + ".log")));
+        }
+        return millis;
+    }
+
+    private long timeToFirstResponse(List<String> jvmOptions, Path log) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of(
+                "-Dserver.port=" + port,
+                "-Dspring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                "-Dspring.datasource.driver-class-name=org.h2.Driver",
+                "-Dspring.datasource.username=sa",
+                "-Dspring.datasource.password=",
+                "-cp", classpath,
+                MAIN_CLASS));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/departments")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            while (System.nanoTime() - start < timeout.toNanos()) {
+                if (!process.isAlive()) {
+                    fail("Application exited with " + process.exitValue() + ", see " + log);
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            return fail("No successful response within " + timeout + ", see " + log);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(List<Long> millis) {
+        return millis.stream().sorted().toList().get(millis.size() / 2);
+    }
+
+    private static String summary(List<Long> millis) {
+        return "median " + median(millis) + "ms (" + millis + ")";
+    }
+}
@@ -0,0 +1,26 @@
+create sequence if not exists department_seq start with 1 increment by 50;
+
+create table if not exists department (
+    department_id bigint not null primary key,
+    department_name varchar(255),
+    department_address varchar(255),
+    department_code varchar(255),
+    normalized_name varchar(255),
+    version bigint,
+    table_version bigint
+);
+
+create index if not exists idx_department_normalized_name on department (normalized_name);
+create index if not exists idx_department_table_version on department (table_version);
+
+create table if not exists department_table_version (
+    version bigint not null
+);
+
+insert into department_table_version (version) select 0 where not exists (select * from department_table_version);
+
+create table if not exists department_deletion (
+    department_id bigint not null,
+    table_version bigint not null,
+    deleted_at timestamp not null
+);